@@ -0,0 +1,405 @@
+package com.github.kazuofficial.blockexporter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+public class ArchiveOutput implements ExportOutput {
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int STAGING_BUFFER_SIZE = 1024 * 1024;
+    private static final Entry END_OF_STREAM = new Entry(new byte[0], new byte[0], 0, 0, 0);
+
+    private final Format format;
+    private final Path file;
+    private final Path partFile;
+    private final FileChannel channel;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<CentralDirectoryEntry> centralDirectory = new ArrayList<>();
+    private final ByteBuffer staging = ByteBuffer.allocateDirect(STAGING_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final Thread writerThread;
+    private final int dosTime;
+    private final long mtimeSeconds;
+    private long position = 0;
+    private volatile IOException failure;
+    private boolean closed = false;
+
+    public ArchiveOutput(Path file, Format format) throws IOException {
+        this.format = format;
+        this.file = file;
+        this.partFile = file.resolveSibling(file.getFileName() + ".part");
+        this.channel = FileChannel.open(this.partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        LocalDateTime now = LocalDateTime.now();
+        this.dosTime = (Math.max(0, now.getYear() - 1980) << 25) | (now.getMonthValue() << 21) | (now.getDayOfMonth() << 16)
+            | (now.getHour() << 11) | (now.getMinute() << 5) | (now.getSecond() >> 1);
+        this.mtimeSeconds = System.currentTimeMillis() / 1000L;
+
+        this.writerThread = new Thread(this::drainQueue, "BlockExporter archive writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void write(String name, byte[] data) throws IOException {
+        IOException error = this.failure;
+        if (error != null) {
+            throw new IOException("Archive writer failed earlier", error);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        byte[] stored = data;
+        int method = 0;
+        if (this.format == Format.ZIP_DEFLATED) {
+            byte[] deflated = deflate(data);
+            if (deflated.length < data.length) {
+                stored = deflated;
+                method = 8;
+            }
+        }
+
+        try {
+            this.queue.put(new Entry(name.getBytes(StandardCharsets.UTF_8), stored, data.length, (int) crc.getValue(), method));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queueing archive entry " + name);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+
+        try {
+            this.queue.put(END_OF_STREAM);
+            this.writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.channel.close();
+            throw new InterruptedIOException("Interrupted while finishing archive " + this.file);
+        }
+
+        try (this.channel) {
+            if (this.failure != null) {
+                throw this.failure;
+            }
+            if (this.format == Format.TAR) {
+                putZeros(1024);
+            } else {
+                writeCentralDirectory();
+            }
+            flushStaging();
+            this.channel.force(false);
+        }
+        Files.move(this.partFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        BlockExporter.LOGGER.info("Wrote archive {} ({} bytes)", this.file, this.position);
+    }
+
+    @Override
+    public synchronized void abort() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.failure = new IOException("Archive export was aborted");
+        this.writerThread.interrupt();
+        this.queue.clear();
+
+        try {
+            this.channel.close();
+            Files.deleteIfExists(this.partFile);
+        } catch (IOException e) {
+            BlockExporter.LOGGER.warn("Failed to clean up aborted archive {}", this.partFile, e);
+        }
+    }
+
+    private void drainQueue() {
+        try {
+            while (true) {
+                Entry entry = this.queue.take();
+                if (entry == END_OF_STREAM) {
+                    return;
+                }
+                if (this.failure == null) {
+                    if (this.format == Format.TAR) {
+                        writeTarEntry(entry);
+                    } else {
+                        writeZipEntry(entry);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            BlockExporter.LOGGER.error("Failed to write archive {}", this.file, e);
+            this.failure = e;
+            drainAfterFailure();
+        } catch (InterruptedException e) {
+            if (this.failure == null) {
+                this.failure = new InterruptedIOException("Archive writer interrupted");
+            }
+        }
+    }
+
+    private void drainAfterFailure() {
+        try {
+            while (this.queue.take() != END_OF_STREAM) {
+                // keep producers from blocking on a full queue
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeZipEntry(Entry entry) throws IOException {
+        long offset = this.position + this.staging.position();
+        ensureStaging(30 + entry.name().length);
+        this.staging.putInt(0x04034b50);
+        this.staging.putShort((short) 20);
+        this.staging.putShort((short) 0x0800);
+        this.staging.putShort((short) entry.method());
+        this.staging.putInt(this.dosTime);
+        this.staging.putInt(entry.crc());
+        this.staging.putInt(entry.data().length);
+        this.staging.putInt(entry.size());
+        this.staging.putShort((short) entry.name().length);
+        this.staging.putShort((short) 0);
+        this.staging.put(entry.name());
+        putBytes(entry.data());
+
+        this.centralDirectory.add(new CentralDirectoryEntry(entry.name(), entry.crc(), entry.data().length, entry.size(), entry.method(), offset));
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long start = this.position + this.staging.position();
+        for (CentralDirectoryEntry entry : this.centralDirectory) {
+            boolean zip64 = entry.offset() >= 0xFFFFFFFFL;
+            ensureStaging(46 + entry.name().length + (zip64 ? 12 : 0));
+            this.staging.putInt(0x02014b50);
+            this.staging.putShort((short) (zip64 ? 45 : 20));
+            this.staging.putShort((short) (zip64 ? 45 : 20));
+            this.staging.putShort((short) 0x0800);
+            this.staging.putShort((short) entry.method());
+            this.staging.putInt(this.dosTime);
+            this.staging.putInt(entry.crc());
+            this.staging.putInt(entry.compressedSize());
+            this.staging.putInt(entry.size());
+            this.staging.putShort((short) entry.name().length);
+            this.staging.putShort((short) (zip64 ? 12 : 0));
+            this.staging.putShort((short) 0);
+            this.staging.putShort((short) 0);
+            this.staging.putShort((short) 0);
+            this.staging.putInt(0);
+            this.staging.putInt(zip64 ? 0xFFFFFFFF : (int) entry.offset());
+            this.staging.put(entry.name());
+            if (zip64) {
+                this.staging.putShort((short) 0x0001);
+                this.staging.putShort((short) 8);
+                this.staging.putLong(entry.offset());
+            }
+        }
+
+        long end = this.position + this.staging.position();
+        long size = end - start;
+        int count = this.centralDirectory.size();
+        boolean zip64 = count >= 0xFFFF || start >= 0xFFFFFFFFL || size >= 0xFFFFFFFFL;
+
+        ensureStaging(56 + 20 + 22);
+        if (zip64) {
+            this.staging.putInt(0x06064b50);
+            this.staging.putLong(44);
+            this.staging.putShort((short) 45);
+            this.staging.putShort((short) 45);
+            this.staging.putInt(0);
+            this.staging.putInt(0);
+            this.staging.putLong(count);
+            this.staging.putLong(count);
+            this.staging.putLong(size);
+            this.staging.putLong(start);
+
+            this.staging.putInt(0x07064b50);
+            this.staging.putInt(0);
+            this.staging.putLong(end);
+            this.staging.putInt(1);
+        }
+
+        this.staging.putInt(0x06054b50);
+        this.staging.putShort((short) 0);
+        this.staging.putShort((short) 0);
+        this.staging.putShort((short) Math.min(count, 0xFFFF));
+        this.staging.putShort((short) Math.min(count, 0xFFFF));
+        this.staging.putInt(zip64 ? 0xFFFFFFFF : (int) size);
+        this.staging.putInt(zip64 ? 0xFFFFFFFF : (int) start);
+        this.staging.putShort((short) 0);
+    }
+
+    private void writeTarEntry(Entry entry) throws IOException {
+        byte[] nameBytes = entry.name();
+        String name = new String(nameBytes, StandardCharsets.UTF_8);
+        String prefix = "";
+        String shortName = name;
+        if (nameBytes.length > 100) {
+            // the ustar fields are measured in bytes, and '/' never occurs inside a multibyte UTF-8 sequence
+            int split = Math.min(155, nameBytes.length - 1);
+            while (split > 0 && nameBytes[split] != '/') {
+                split--;
+            }
+            if (split > 0 && nameBytes.length - split - 1 <= 100) {
+                prefix = new String(nameBytes, 0, split, StandardCharsets.UTF_8);
+                shortName = new String(nameBytes, split + 1, nameBytes.length - split - 1, StandardCharsets.UTF_8);
+            } else {
+                writePaxHeader(name);
+                shortName = name.substring(0, Math.min(name.length(), 100));
+                while (shortName.getBytes(StandardCharsets.UTF_8).length > 100) {
+                    shortName = shortName.substring(0, shortName.length() - 1);
+                }
+            }
+        }
+
+        writeTarHeader(shortName, prefix, entry.data().length, '0');
+        putBytes(entry.data());
+        putZeros(padding(entry.data().length));
+    }
+
+    private void writePaxHeader(String name) throws IOException {
+        String record = " path=" + name + "\n";
+        int length = record.getBytes(StandardCharsets.UTF_8).length;
+        int total = length + Integer.toString(length).length();
+        if (Integer.toString(total).length() != Integer.toString(length).length()) {
+            total++;
+        }
+        byte[] data = (total + record).getBytes(StandardCharsets.UTF_8);
+
+        writeTarHeader("PaxHeaders/entry", "", data.length, 'x');
+        putBytes(data);
+        putZeros(padding(data.length));
+    }
+
+    private void writeTarHeader(String name, String prefix, long size, char type) throws IOException {
+        byte[] header = new byte[512];
+        putTarString(header, 0, 100, name);
+        putTarString(header, 100, 8, "0000644");
+        putTarString(header, 108, 8, "0000000");
+        putTarString(header, 116, 8, "0000000");
+        putTarString(header, 124, 12, String.format("%011o", size));
+        putTarString(header, 136, 12, String.format("%011o", this.mtimeSeconds));
+        header[156] = (byte) type;
+        putTarString(header, 257, 6, "ustar");
+        header[263] = '0';
+        header[264] = '0';
+        putTarString(header, 345, 155, prefix);
+
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        int checksum = 0;
+        for (byte value : header) {
+            checksum += value & 0xFF;
+        }
+        putTarString(header, 148, 7, String.format("%06o", checksum));
+
+        putBytes(header);
+    }
+
+    private static void putTarString(byte[] header, int offset, int length, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length));
+    }
+
+    private static int padding(int length) {
+        return (512 - length % 512) % 512;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2 + 64);
+            byte[] buffer = new byte[16 * 1024];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void putBytes(byte[] data) throws IOException {
+        if (data.length <= this.staging.remaining()) {
+            this.staging.put(data);
+            return;
+        }
+
+        flushStaging();
+        if (data.length <= this.staging.remaining()) {
+            this.staging.put(data);
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            this.position += this.channel.write(buffer);
+        }
+    }
+
+    private void putZeros(int count) throws IOException {
+        ensureStaging(count);
+        for (int i = 0; i < count; i++) {
+            this.staging.put((byte) 0);
+        }
+    }
+
+    private void ensureStaging(int bytes) throws IOException {
+        if (this.staging.remaining() < bytes) {
+            flushStaging();
+        }
+    }
+
+    private void flushStaging() throws IOException {
+        this.staging.flip();
+        while (this.staging.hasRemaining()) {
+            this.position += this.channel.write(this.staging);
+        }
+        this.staging.clear();
+    }
+
+    public enum Format {
+        ZIP("zip"),
+        ZIP_DEFLATED("zip"),
+        TAR("tar");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return this.extension;
+        }
+    }
+
+    private record Entry(byte[] name, byte[] data, int size, int crc, int method) {
+    }
+
+    private record CentralDirectoryEntry(byte[] name, int crc, int compressedSize, int size, int method, long offset) {
+    }
+}
@@ -0,0 +1,210 @@
+package com.github.kazuofficial.blockexporter;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.util.Identifier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class AtlasExportSink implements ExportSink {
+    private static final int MAX_SHEET_SIZE = 4096;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private final ExportOutput output;
+    private final String prefix;
+    private final int spriteSize;
+    private final int sheetSize;
+    private final ImageEncoder encoder;
+    private final ExportStats stats;
+    private final ImageMemoryBudget memoryBudget;
+    private final List<SheetInfo> sheets = new ArrayList<>();
+    private final Map<Identifier, SpriteInfo> sprites = new TreeMap<>();
+
+    private NativeImage currentSheet;
+    private ShelfPacker packer;
+
+    public AtlasExportSink(ExportOutput output, String prefix, int spriteSize, ImageEncoder encoder, ExportStats stats,
+                           ImageMemoryBudget memoryBudget) {
+        this.output = output;
+        this.prefix = prefix;
+        this.spriteSize = spriteSize;
+        this.encoder = encoder;
+        this.stats = stats;
+        this.memoryBudget = memoryBudget;
+        this.sheetSize = Math.max(spriteSize, MAX_SHEET_SIZE);
+    }
+
+    @Override
+    public void write(Identifier itemId, NativeImage image) throws IOException {
+        NativeImage fullSheet = null;
+        int fullSheetIndex = -1;
+
+        synchronized (this) {
+            if (this.currentSheet == null) {
+                openSheet();
+            }
+
+            ShelfPacker.Placement placement = this.packer.place(image.getWidth(), image.getHeight());
+            if (placement == null) {
+                fullSheet = this.currentSheet;
+                fullSheetIndex = this.sheets.size() - 1;
+                openSheet();
+                placement = this.packer.place(image.getWidth(), image.getHeight());
+            }
+
+            PixelTransfer.copyRect(ImagePixels.view(image), image.getWidth(), 0, 0,
+                ImagePixels.view(this.currentSheet), this.sheetSize, placement.x(), placement.y(), placement.width(), placement.height());
+            this.sprites.put(itemId, new SpriteInfo(this.sheets.size() - 1, placement));
+        }
+
+        if (fullSheet != null) {
+            try {
+                writeSheet(fullSheetIndex, fullSheet);
+            } finally {
+                closeSheet(fullSheet);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void writeAlias(Identifier alias, Identifier canonical) {
+        SpriteInfo sprite = this.sprites.get(canonical);
+        if (sprite != null) {
+            this.sprites.put(alias, sprite);
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        NativeImage lastSheet;
+        ShelfPacker lastPacker;
+        synchronized (this) {
+            lastSheet = this.currentSheet;
+            lastPacker = this.packer;
+            this.currentSheet = null;
+            this.packer = null;
+        }
+
+        if (lastSheet != null) {
+            try {
+                int width = lastPacker.getUsedWidth();
+                int height = lastPacker.getUsedHeight();
+                try (NativeImage cropped = new NativeImage(width, height, true)) {
+                    PixelTransfer.copyRect(ImagePixels.view(lastSheet), this.sheetSize, 0, 0,
+                        ImagePixels.view(cropped), width, 0, 0, width, height);
+                    writeSheet(this.sheets.size() - 1, cropped);
+                }
+            } finally {
+                closeSheet(lastSheet);
+            }
+        }
+
+        writeIndex();
+        BlockExporter.LOGGER.info("Wrote {} sprites into {} atlas sheet(s)", this.sprites.size(), this.sheets.size());
+    }
+
+    @Override
+    public void abort() {
+        NativeImage sheet;
+        synchronized (this) {
+            sheet = this.currentSheet;
+            this.currentSheet = null;
+            this.packer = null;
+        }
+        if (sheet != null) {
+            closeSheet(sheet);
+        }
+    }
+
+    private void openSheet() {
+        // a sheet is held until it fills up, and one per output size is open at a time
+        this.memoryBudget.acquireResident(sheetBytes());
+        this.currentSheet = new NativeImage(this.sheetSize, this.sheetSize, true);
+        this.packer = new ShelfPacker(this.sheetSize, this.sheetSize);
+        this.sheets.add(new SheetInfo("atlas_" + this.sheets.size() + "." + this.encoder.getExtension()));
+    }
+
+    private void closeSheet(NativeImage sheet) {
+        sheet.close();
+        this.memoryBudget.releaseResident(sheetBytes());
+    }
+
+    private long sheetBytes() {
+        return (long) this.sheetSize * this.sheetSize * 4;
+    }
+
+    private void writeSheet(int index, NativeImage sheet) throws IOException {
+        SheetInfo info = this.sheets.get(index);
+        info.width = sheet.getWidth();
+        info.height = sheet.getHeight();
+        long start = System.nanoTime();
+        ByteBuffer[] data = this.encoder.encodeImage(ImagePixels.view(sheet), info.width, info.height);
+        long length = ImageEncoder.length(data);
+        long encoded = System.nanoTime();
+        this.output.write(this.prefix + info.fileName, data);
+        this.stats.record(null, ExportStats.Stage.ENCODE, encoded - start);
+        this.stats.record(null, ExportStats.Stage.WRITE, System.nanoTime() - encoded);
+        this.stats.recordBytesWritten(length);
+        BlockExporter.LOGGER.debug("Wrote atlas sheet {} ({}x{})", info.fileName, info.width, info.height);
+    }
+
+    private void writeIndex() throws IOException {
+        JsonObject root = new JsonObject();
+        root.addProperty("spriteSize", this.spriteSize);
+
+        JsonArray sheetArray = new JsonArray();
+        for (SheetInfo sheet : this.sheets) {
+            JsonObject sheetObject = new JsonObject();
+            sheetObject.addProperty("file", sheet.fileName);
+            sheetObject.addProperty("width", sheet.width);
+            sheetObject.addProperty("height", sheet.height);
+            sheetArray.add(sheetObject);
+        }
+        root.add("sheets", sheetArray);
+
+        JsonObject spriteObject = new JsonObject();
+        for (Map.Entry<Identifier, SpriteInfo> entry : this.sprites.entrySet()) {
+            SpriteInfo sprite = entry.getValue();
+            SheetInfo sheet = this.sheets.get(sprite.sheet());
+            ShelfPacker.Placement rect = sprite.placement();
+
+            JsonObject object = new JsonObject();
+            object.addProperty("sheet", sprite.sheet());
+            object.addProperty("x", rect.x());
+            object.addProperty("y", rect.y());
+            object.addProperty("width", rect.width());
+            object.addProperty("height", rect.height());
+            object.addProperty("u0", (float) rect.x() / sheet.width);
+            object.addProperty("v0", (float) rect.y() / sheet.height);
+            object.addProperty("u1", (float) (rect.x() + rect.width()) / sheet.width);
+            object.addProperty("v1", (float) (rect.y() + rect.height()) / sheet.height);
+            spriteObject.add(entry.getKey().toString(), object);
+        }
+        root.add("sprites", spriteObject);
+
+        this.output.write(this.prefix + "atlas.json", GSON.toJson(root).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record SpriteInfo(int sheet, ShelfPacker.Placement placement) {
+    }
+
+    private static final class SheetInfo {
+        private final String fileName;
+        private int width;
+        private int height;
+
+        private SheetInfo(String fileName) {
+            this.fileName = fileName;
+        }
+    }
+}
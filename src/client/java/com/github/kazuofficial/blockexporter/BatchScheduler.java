@@ -0,0 +1,52 @@
+package com.github.kazuofficial.blockexporter;
+
+public class BatchScheduler {
+    private static final int INITIAL_BATCH_SIZE = 8;
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final double SMOOTHING = 0.25;
+
+    private final long budgetNanos;
+    private double nanosPerItem = -1;
+    private int lastBatchSize = INITIAL_BATCH_SIZE;
+
+    public BatchScheduler(long budgetNanos) {
+        if (budgetNanos <= 0) {
+            throw new IllegalArgumentException("Frame budget must be positive: " + budgetNanos);
+        }
+        this.budgetNanos = budgetNanos;
+    }
+
+    /**
+     * Returns how many items fit into one frame budget, or 0 when the writer
+     * queue is full and rendering should wait for it to drain.
+     */
+    public int nextBatchSize(int pendingWrites, int writeQueueCapacity) {
+        if (pendingWrites >= writeQueueCapacity) {
+            return 0;
+        }
+
+        long size = this.nanosPerItem < 0
+            ? INITIAL_BATCH_SIZE
+            : (long) (this.budgetNanos / this.nanosPerItem);
+        // grow gradually so a cheap run of skipped items can't blow the budget on the next heavy one
+        size = Math.min(size, this.lastBatchSize * 2L);
+
+        int throttleStart = writeQueueCapacity / 2;
+        if (pendingWrites > throttleStart) {
+            size = size * (writeQueueCapacity - pendingWrites) / (writeQueueCapacity - throttleStart);
+        }
+        return (int) Math.clamp(size, 1, MAX_BATCH_SIZE);
+    }
+
+    public void record(int items, long elapsedNanos) {
+        if (items <= 0) {
+            return;
+        }
+
+        this.lastBatchSize = items;
+        double sample = (double) elapsedNanos / items;
+        this.nanosPerItem = this.nanosPerItem < 0
+            ? sample
+            : this.nanosPerItem + SMOOTHING * (sample - this.nanosPerItem);
+    }
+}
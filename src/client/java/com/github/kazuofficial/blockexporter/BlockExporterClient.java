@@ -3,6 +3,7 @@ package com.github.kazuofficial.blockexporter;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
+import net.fabricmc.fabric.api.event.lifecycle.v1.CommonLifecycleEvents;
 import net.minecraft.client.option.KeyBinding;
 import net.minecraft.client.util.InputUtil;
 import org.lwjgl.glfw.GLFW;
@@ -19,9 +20,14 @@ public class BlockExporterClient implements ClientModInitializer {
 			"category.blockexporter"
 		));
 
+		HeadlessExport.register();
+		RenderService.register();
+		CommonLifecycleEvents.TAGS_LOADED.register((registries, client) -> ItemIndex.invalidateTags());
+
+		ClientTickEvents.START_CLIENT_TICK.register(client -> ItemRenderer.onClientTick());
 		ClientTickEvents.END_CLIENT_TICK.register(client -> {
 			while (exportKeybind.wasPressed()) {
-				if (client.currentScreen == null) {
+				if (client.currentScreen == null && !HeadlessExport.isRunning()) {
 					client.setScreen(new ExportScreen());
 				}
 			}
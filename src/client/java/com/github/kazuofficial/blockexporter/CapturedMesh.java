@@ -0,0 +1,28 @@
+package com.github.kazuofficial.blockexporter;
+
+import java.util.List;
+
+/**
+ * Triangle geometry captured from one item render, grouped by how the
+ * render layer it was drawn with blends. Texture coordinates refer to the
+ * shared block atlas.
+ */
+public record CapturedMesh(List<Primitive> primitives) {
+    public enum AlphaMode {
+        OPAQUE,
+        MASK,
+        BLEND
+    }
+
+    /**
+     * Per-vertex attributes are tightly packed: three floats of position and
+     * normal, two of texture coordinates and four of RGBA color per vertex.
+     */
+    public record Primitive(AlphaMode alphaMode, int vertexCount, float[] positions, float[] normals,
+                            float[] uvs, float[] colors, int[] indices) {
+    }
+
+    public boolean isEmpty() {
+        return this.primitives.isEmpty();
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.kazuofficial.blockexporter;
+
+import com.google.common.hash.HashCode;
+
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.util.Identifier;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes each distinct image once. Items whose pixels match are grouped,
+ * and the group's lowest item id keeps its file while the others become
+ * aliases of it, so the choice doesn't depend on which writer thread got
+ * to an image first and stays the same from run to run. Files from an
+ * earlier run that are still current join their groups through
+ * {@link #retain}, so items skipped by an incremental or resumed export
+ * still count as the file their duplicates point to, and a resumed export
+ * gets back the groups the interrupted one journaled.
+ */
+public class DeduplicatingExportSink implements ExportSink {
+    // this many items sharing one image is almost always a missing texture or placeholder model
+    private static final int SUSPICIOUS_GROUP_SIZE = 16;
+
+    private final ExportSink delegate;
+    private final String label;
+    private final Map<HashCode, Group> groups = new ConcurrentHashMap<>();
+    private final Map<Identifier, Group> groupByItem = new ConcurrentHashMap<>();
+
+    public DeduplicatingExportSink(ExportSink delegate, String label) {
+        this.delegate = delegate;
+        this.label = label;
+    }
+
+    @Override
+    public boolean hasOutput(Identifier itemId) {
+        // an item that matched a lower id has no file of its own, whatever an earlier run left behind
+        Group group = this.groupByItem.get(itemId);
+        if (group != null) {
+            synchronized (group) {
+                if (!itemId.equals(group.canonical)) {
+                    return false;
+                }
+            }
+        }
+        return this.delegate.hasOutput(itemId);
+    }
+
+    @Override
+    public void write(Identifier itemId, NativeImage image) throws IOException {
+        store(itemId, ImagePixels.hash(image), () -> this.delegate.write(itemId, image));
+    }
+
+    @Override
+    public void writeAnimation(Identifier itemId, List<NativeImage> frames, int frameDelayMillis) throws IOException {
+        store(itemId, ImagePixels.hash(frames), () -> this.delegate.writeAnimation(itemId, frames, frameDelayMillis));
+    }
+
+    @Override
+    public void retain(Identifier itemId, HashCode pixelHash) {
+        Group group = this.groups.computeIfAbsent(pixelHash, Group::new);
+        synchronized (group) {
+            if (group.canonical == null || itemId.compareTo(group.canonical) < 0) {
+                group.canonical = itemId;
+            }
+            group.members.add(itemId);
+        }
+        this.groupByItem.put(itemId, group);
+    }
+
+    @Override
+    public void retainAlias(Identifier alias, Identifier canonical, HashCode pixelHash) {
+        // the canonical file was written before anything could become its alias
+        retain(canonical, pixelHash);
+        Group group = this.groups.get(pixelHash);
+        synchronized (group) {
+            group.members.add(alias);
+        }
+        this.groupByItem.put(alias, group);
+    }
+
+    @Override
+    public StoredImage getStoredImage(Identifier itemId) {
+        Group group = this.groupByItem.get(itemId);
+        if (group == null) {
+            return null;
+        }
+        synchronized (group) {
+            return new StoredImage(group.hash, itemId.equals(group.canonical) ? null : group.canonical);
+        }
+    }
+
+    private void store(Identifier itemId, HashCode hash, ImageWrite write) throws IOException {
+        Group group = this.groups.computeIfAbsent(hash, Group::new);
+        // only writers of identical images wait on each other here
+        synchronized (group) {
+            if (group.canonical == null || itemId.compareTo(group.canonical) < 0) {
+                write.run();
+                group.canonical = itemId;
+            }
+            group.members.add(itemId);
+        }
+        this.groupByItem.put(itemId, group);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        Map<Identifier, Identifier> aliases = new TreeMap<>();
+        int duplicatedGroups = 0;
+        for (Group group : this.groups.values()) {
+            if (group.members.size() < 2) {
+                continue;
+            }
+            duplicatedGroups++;
+            Set<Identifier> others = new TreeSet<>(group.members);
+            others.remove(group.canonical);
+            others.forEach(alias -> aliases.put(alias, group.canonical));
+            if (group.members.size() >= SUSPICIOUS_GROUP_SIZE) {
+                BlockExporter.LOGGER.warn("{} items render identically to {} at {}, likely a missing texture: {}",
+                    others.size(), group.canonical, this.label, others);
+            }
+        }
+
+        for (Map.Entry<Identifier, Identifier> alias : aliases.entrySet()) {
+            this.delegate.writeAlias(alias.getKey(), alias.getValue());
+        }
+        if (!aliases.isEmpty()) {
+            BlockExporter.LOGGER.info("Skipped {} duplicate images across {} groups at {}", aliases.size(), duplicatedGroups, this.label);
+        }
+        this.delegate.finish();
+    }
+
+    @Override
+    public void abort() {
+        this.delegate.abort();
+    }
+
+    @FunctionalInterface
+    private interface ImageWrite {
+        void run() throws IOException;
+    }
+
+    private static final class Group {
+        private final HashCode hash;
+        private final Set<Identifier> members = new TreeSet<>();
+        private Identifier canonical;
+
+        Group(HashCode hash) {
+            this.hash = hash;
+        }
+    }
+}
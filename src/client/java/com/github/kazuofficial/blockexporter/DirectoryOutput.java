@@ -0,0 +1,98 @@
+package com.github.kazuofficial.blockexporter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes each file next to its destination first and renames it into place,
+ * so a crash or cancel never leaves a partially written image behind.
+ */
+public class DirectoryOutput implements ExportOutput {
+    private static final String TEMP_SUFFIX = ".part";
+    // per-size folders sit one level below the export directory
+    private static final int TEMP_SEARCH_DEPTH = 2;
+
+    private final Path directory;
+
+    public DirectoryOutput(Path directory) throws IOException {
+        this.directory = directory;
+        deleteLeftoverTempFiles();
+    }
+
+    @Override
+    public void write(String name, byte[] data) throws IOException {
+        write(name, ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public void write(String name, ByteBuffer... data) throws IOException {
+        Path target = this.directory.resolve(name);
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            // one gathering write passes native pixel memory to the file without copying it onto the heap
+            try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                long remaining = ImageEncoder.length(data);
+                while (remaining > 0) {
+                    remaining -= channel.write(data);
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private void deleteLeftoverTempFiles() throws IOException {
+        if (!Files.isDirectory(this.directory)) {
+            return;
+        }
+        List<Path> leftovers;
+        try (Stream<Path> files = Files.walk(this.directory, TEMP_SEARCH_DEPTH)) {
+            leftovers = files.filter(file -> file.getFileName().toString().endsWith(TEMP_SUFFIX)).toList();
+        }
+        for (Path leftover : leftovers) {
+            Files.deleteIfExists(leftover);
+        }
+        if (!leftovers.isEmpty()) {
+            BlockExporter.LOGGER.info("Removed {} partially written files from an interrupted export", leftovers.size());
+        }
+    }
+
+    @Override
+    public boolean link(String target, String name) throws IOException {
+        Path link = this.directory.resolve(name);
+        Files.deleteIfExists(link);
+        try {
+            Files.createLink(link, this.directory.resolve(target));
+            return true;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            BlockExporter.LOGGER.debug("Couldn't hard link {} to {}", name, target, e);
+            return false;
+        }
+    }
+
+    @Override
+    public void delete(String name) throws IOException {
+        Files.deleteIfExists(this.directory.resolve(name));
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return Files.isRegularFile(this.directory.resolve(name));
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.kazuofficial.blockexporter;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.item.Item;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.registry.tag.TagKey;
+import net.minecraft.util.Identifier;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Export settings given as space separated {@code key=value} pairs, e.g.
+ * {@code namespace=minecraft tag=#minecraft:logs sizes=64,32,16 dir=exports sink=zip exit=true}.
+ */
+public record ExportArguments(ExportConfig config, Set<String> namespaces, List<TagKey<Item>> tags, List<String> terms, boolean exitWhenDone) {
+    public static final String USAGE = "namespace=<ns,...> tag=<#tag,...> search=<text,...> sizes=<px,...> dir=<path> "
+        + "sink=directory|zip|zip_deflated|tar mode=files|atlas|gltf format=png|qoi|raw incremental=true|false dedup=true|false hardlink=true|false frames=<n> order=planned|registry compression=0-9 exit=true|false";
+
+    public static ExportArguments parse(String input) {
+        ExportConfig.Builder builder = ExportConfig.builder();
+        PngEncoder.Options png = PngEncoder.Options.DEFAULT;
+        Set<String> namespaces = new HashSet<>();
+        List<TagKey<Item>> tags = new ArrayList<>();
+        List<String> terms = new ArrayList<>();
+        boolean exitWhenDone = false;
+
+        for (String token : input.trim().split("\\s+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+
+            int separator = token.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got '" + token + "'");
+            }
+            String key = token.substring(0, separator).toLowerCase(Locale.ROOT);
+            String value = token.substring(separator + 1);
+
+            switch (key) {
+                case "namespace", "namespaces" -> namespaces.addAll(splitList(value));
+                case "tag", "tags" -> {
+                    for (String tag : splitList(value)) {
+                        Identifier id = Identifier.tryParse(tag.startsWith("#") ? tag.substring(1) : tag);
+                        if (id == null) {
+                            throw new IllegalArgumentException("Invalid item tag '" + tag + "'");
+                        }
+                        tags.add(TagKey.of(RegistryKeys.ITEM, id));
+                    }
+                }
+                case "search" -> splitList(value).forEach(term -> terms.add(term.toLowerCase(Locale.ROOT)));
+                case "size", "sizes" -> {
+                    List<Integer> sizes = splitList(value).stream().map(size -> parseInt(key, size)).toList();
+                    builder.textureSize(sizes.stream().max(Integer::compare).orElseThrow()).outputSizes(sizes);
+                }
+                case "dir", "directory" -> builder.exportDirectory(MinecraftClient.getInstance().runDirectory.toPath().resolve(Path.of(value)));
+                case "sink" -> builder.sinkType(parseEnum(ExportConfig.SinkType.class, key, value));
+                case "mode" -> builder.outputMode(parseEnum(ExportConfig.OutputMode.class, key, value));
+                case "format" -> builder.imageFormat(parseEnum(ExportConfig.ImageFormat.class, key, value));
+                case "incremental" -> builder.incremental(parseBoolean(key, value));
+                case "dedup", "deduplicate" -> builder.deduplicate(parseBoolean(key, value));
+                case "hardlink" -> builder.hardlinkDuplicates(parseBoolean(key, value));
+                case "frames" -> builder.animationFrames(parseInt(key, value));
+                case "order" -> builder.planRenderOrder(switch (value.toLowerCase(Locale.ROOT)) {
+                    case "planned" -> true;
+                    case "registry" -> false;
+                    default -> throw new IllegalArgumentException("Option 'order' expects planned or registry but got '" + value + "'");
+                });
+                case "compression" -> png = new PngEncoder.Options(parseInt(key, value), png.filter(), png.palette());
+                case "exit" -> exitWhenDone = parseBoolean(key, value);
+                default -> throw new IllegalArgumentException("Unknown option '" + key + "'");
+            }
+        }
+
+        return new ExportArguments(builder.pngOptions(png).build(), Set.copyOf(namespaces), List.copyOf(tags), List.copyOf(terms), exitWhenDone);
+    }
+
+    public boolean needsWorld() {
+        return !this.tags.isEmpty();
+    }
+
+    public ItemIndex.Query query() {
+        return new ItemIndex.Query(this.namespaces, this.tags, this.terms);
+    }
+
+    public List<Item> selectItems() {
+        return ItemIndex.get().select(query());
+    }
+
+    private static List<String> splitList(String value) {
+        return Arrays.stream(value.split(",")).map(String::trim).filter(part -> !part.isEmpty()).toList();
+    }
+
+    private static int parseInt(String key, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option '" + key + "' expects a number but got '" + value + "'");
+        }
+    }
+
+    private static boolean parseBoolean(String key, String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "true", "yes", "on" -> true;
+            case "false", "no", "off" -> false;
+            default -> throw new IllegalArgumentException("Option '" + key + "' expects true or false but got '" + value + "'");
+        };
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String key, String value) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Option '" + key + "' expects one of "
+                + Arrays.toString(type.getEnumConstants()).toLowerCase(Locale.ROOT) + " but got '" + value + "'");
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.github.kazuofficial.blockexporter;
+
+import net.minecraft.client.MinecraftClient;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+public record ExportConfig(int textureSize, List<Integer> outputSizes, OutputMode outputMode, Path exportDirectory,
+                           boolean incremental, boolean batchedRendering, int readbackSlots, ImageFormat imageFormat,
+                           PngEncoder.Options pngOptions, SinkType sinkType, long imageMemoryBudget, boolean deduplicate,
+                           boolean hardlinkDuplicates, int animationFrames, boolean planRenderOrder) {
+    public static final long DEFAULT_IMAGE_MEMORY_BUDGET = 256L * 1024 * 1024;
+
+    public enum OutputMode {
+        FILES("Files"),
+        ATLAS("Atlas"),
+        GLTF("glTF");
+
+        private final String displayName;
+
+        OutputMode(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return this.displayName;
+        }
+    }
+
+    public enum ImageFormat {
+        PNG("PNG"),
+        QOI("QOI"),
+        RAW("Raw RGBA");
+
+        private final String displayName;
+
+        ImageFormat(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return this.displayName;
+        }
+    }
+
+    public enum SinkType {
+        DIRECTORY("Folder", null),
+        ZIP("ZIP (stored)", ArchiveOutput.Format.ZIP),
+        ZIP_DEFLATED("ZIP (deflated)", ArchiveOutput.Format.ZIP_DEFLATED),
+        TAR("TAR", ArchiveOutput.Format.TAR);
+
+        private final String displayName;
+        private final ArchiveOutput.Format archiveFormat;
+
+        SinkType(String displayName, ArchiveOutput.Format archiveFormat) {
+            this.displayName = displayName;
+            this.archiveFormat = archiveFormat;
+        }
+
+        public String getDisplayName() {
+            return this.displayName;
+        }
+
+        public ArchiveOutput.Format getArchiveFormat() {
+            return this.archiveFormat;
+        }
+    }
+
+    public boolean isMultiSize() {
+        return this.outputSizes.size() > 1;
+    }
+
+    public Path directoryForSize(int size) {
+        return isMultiSize() ? this.exportDirectory.resolve(Integer.toString(size)) : this.exportDirectory;
+    }
+
+    public String prefixForSize(int size) {
+        return isMultiSize() ? size + "/" : "";
+    }
+
+    public ExportOutput createOutput() throws IOException {
+        ArchiveOutput.Format format = this.sinkType.getArchiveFormat();
+        if (format == null) {
+            return new DirectoryOutput(this.exportDirectory);
+        }
+        return new ArchiveOutput(this.exportDirectory.resolve("export." + format.getExtension()), format);
+    }
+
+    public static Path defaultExportDirectory() {
+        return MinecraftClient.getInstance().runDirectory.toPath().resolve("item_exports");
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private int textureSize = 64;
+        private List<Integer> outputSizes = List.of();
+        private OutputMode outputMode = OutputMode.FILES;
+        private Path exportDirectory;
+        private boolean incremental = true;
+        private boolean batchedRendering = true;
+        private int readbackSlots = 4;
+        private ImageFormat imageFormat = ImageFormat.PNG;
+        private PngEncoder.Options pngOptions = PngEncoder.Options.DEFAULT;
+        private SinkType sinkType = SinkType.DIRECTORY;
+        private long imageMemoryBudget = DEFAULT_IMAGE_MEMORY_BUDGET;
+        private boolean deduplicate = false;
+        private boolean hardlinkDuplicates = false;
+        private int animationFrames = 1;
+        private boolean planRenderOrder = true;
+
+        private Builder() {
+        }
+
+        public Builder textureSize(int textureSize) {
+            this.textureSize = textureSize;
+            return this;
+        }
+
+        public Builder outputSizes(Collection<Integer> outputSizes) {
+            this.outputSizes = List.copyOf(outputSizes);
+            return this;
+        }
+
+        public Builder outputMode(OutputMode outputMode) {
+            this.outputMode = outputMode;
+            return this;
+        }
+
+        public Builder exportDirectory(Path exportDirectory) {
+            this.exportDirectory = exportDirectory;
+            return this;
+        }
+
+        public Builder incremental(boolean incremental) {
+            this.incremental = incremental;
+            return this;
+        }
+
+        public Builder batchedRendering(boolean batchedRendering) {
+            this.batchedRendering = batchedRendering;
+            return this;
+        }
+
+        public Builder readbackSlots(int readbackSlots) {
+            this.readbackSlots = readbackSlots;
+            return this;
+        }
+
+        public Builder imageFormat(ImageFormat imageFormat) {
+            this.imageFormat = imageFormat;
+            return this;
+        }
+
+        public Builder pngOptions(PngEncoder.Options pngOptions) {
+            this.pngOptions = pngOptions;
+            return this;
+        }
+
+        public Builder sinkType(SinkType sinkType) {
+            this.sinkType = sinkType;
+            return this;
+        }
+
+        public Builder imageMemoryBudget(long imageMemoryBudget) {
+            this.imageMemoryBudget = imageMemoryBudget;
+            return this;
+        }
+
+        public Builder deduplicate(boolean deduplicate) {
+            this.deduplicate = deduplicate;
+            return this;
+        }
+
+        public Builder hardlinkDuplicates(boolean hardlinkDuplicates) {
+            this.hardlinkDuplicates = hardlinkDuplicates;
+            return this;
+        }
+
+        public Builder animationFrames(int animationFrames) {
+            this.animationFrames = animationFrames;
+            return this;
+        }
+
+        public Builder planRenderOrder(boolean planRenderOrder) {
+            this.planRenderOrder = planRenderOrder;
+            return this;
+        }
+
+        public ExportConfig build() {
+            List<Integer> sizes = this.outputSizes.isEmpty()
+                ? List.of(this.textureSize)
+                : this.outputSizes.stream().distinct().sorted(Comparator.reverseOrder()).toList();
+            int renderSize = sizes.getFirst();
+            for (int size : sizes) {
+                if (size <= 0) {
+                    throw new IllegalArgumentException("Texture size must be positive: " + size);
+                }
+                if (renderSize % size != 0 || Integer.bitCount(renderSize / size) != 1) {
+                    throw new IllegalArgumentException("Size " + size + " is not a power-of-two fraction of " + renderSize);
+                }
+            }
+            if (this.readbackSlots <= 0) {
+                throw new IllegalArgumentException("Readback slot count must be positive: " + this.readbackSlots);
+            }
+            if (this.imageMemoryBudget <= 0) {
+                throw new IllegalArgumentException("Image memory budget must be positive: " + this.imageMemoryBudget);
+            }
+            if (this.animationFrames <= 0) {
+                throw new IllegalArgumentException("Animation frame count must be positive: " + this.animationFrames);
+            }
+            Path directory = this.exportDirectory != null ? this.exportDirectory : defaultExportDirectory();
+            return new ExportConfig(renderSize, sizes, this.outputMode, directory, this.incremental, this.batchedRendering,
+                this.readbackSlots, this.imageFormat, this.pngOptions, this.sinkType, this.imageMemoryBudget,
+                this.deduplicate, this.hardlinkDuplicates, this.animationFrames, this.planRenderOrder);
+        }
+    }
+}
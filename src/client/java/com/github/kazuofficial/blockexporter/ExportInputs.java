@@ -0,0 +1,172 @@
+package com.github.kazuofficial.blockexporter;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.OverlayTexture;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.client.render.item.ItemRenderState;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.component.DataComponentTypes;
+import net.minecraft.item.ItemStack;
+import net.minecraft.registry.Registries;
+import net.minecraft.resource.Resource;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.util.Identifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hashes everything that decides how an item renders, so the manifest can
+ * tell when an exported image is still current: what the resolved model
+ * draws (its render layers, geometry, atlas coordinates and tints) and the
+ * content of every model, item definition and texture the client has
+ * loaded. Pack contents are hashed rather than pack ids, so editing a folder
+ * pack, rebuilding a mod without a version bump or reloading changed
+ * textures all count as changes.
+ */
+public class ExportInputs {
+    private static final HashFunction INPUT_HASH = Hashing.murmur3_128();
+    private static final List<String> RENDER_RESOURCE_DIRECTORIES = List.of("items", "models", "textures");
+
+    private final int textureSize;
+    private final int animationFrames;
+    private final CompletableFuture<String> resourceFingerprint;
+    private final Map<String, String> namespaceVersions = new ConcurrentHashMap<>();
+
+    public ExportInputs(MinecraftClient client, int textureSize, int animationFrames) {
+        this.textureSize = textureSize;
+        this.animationFrames = animationFrames;
+        // reading every pack takes a while, so it runs while the first items are being set up
+        ResourceManager resourceManager = client.getResourceManager();
+        this.resourceFingerprint = CompletableFuture.supplyAsync(() -> fingerprintResources(resourceManager),
+            task -> Thread.ofVirtual().name("item-exporter-inputs").start(task));
+    }
+
+    /**
+     * Whether the resource fingerprint has been read, so {@link #hash} won't block.
+     */
+    public boolean isReady() {
+        return this.resourceFingerprint.isDone();
+    }
+
+    /**
+     * Hashes the inputs of {@code stack}, whose model must already be resolved into {@code renderState}.
+     */
+    public String hash(ItemStack stack, ItemRenderState renderState) {
+        Identifier itemId = Registries.ITEM.getId(stack.getItem());
+        Identifier modelId = stack.get(DataComponentTypes.ITEM_MODEL);
+
+        Hasher hasher = INPUT_HASH.newHasher()
+            .putInt(this.textureSize)
+            .putString(itemId.toString(), StandardCharsets.UTF_8)
+            .putString(namespaceVersion(itemId.getNamespace()), StandardCharsets.UTF_8)
+            .putString(this.resourceFingerprint.join(), StandardCharsets.UTF_8);
+
+        // only mixed in when enabled so manifests from static exports stay valid
+        if (this.animationFrames > 1) {
+            hasher.putInt(this.animationFrames);
+        }
+
+        if (modelId != null) {
+            hasher.putString(modelId.toString(), StandardCharsets.UTF_8)
+                .putString(namespaceVersion(modelId.getNamespace()), StandardCharsets.UTF_8);
+        }
+
+        // special model renderers draw from code, so their output only shows up in what they draw
+        renderState.render(new MatrixStack(), new HashingVertexConsumers(hasher), 15728880, OverlayTexture.DEFAULT_UV);
+        return hasher.hash().toString();
+    }
+
+    private String namespaceVersion(String namespace) {
+        return this.namespaceVersions.computeIfAbsent(namespace, key -> FabricLoader.getInstance().getModContainer(key)
+            .map(ModContainer::getMetadata)
+            .map(metadata -> metadata.getId() + "@" + metadata.getVersion().getFriendlyString())
+            .orElse(key));
+    }
+
+    private static String fingerprintResources(ResourceManager resourceManager) {
+        long start = System.nanoTime();
+        Hasher hasher = INPUT_HASH.newHasher();
+        int count = 0;
+        for (String directory : RENDER_RESOURCE_DIRECTORIES) {
+            // sorted so the fingerprint doesn't depend on the order packs list their files in
+            Map<Identifier, Resource> resources = new TreeMap<>(resourceManager.findResources(directory, id -> true));
+            for (Map.Entry<Identifier, Resource> entry : resources.entrySet()) {
+                hasher.putString(entry.getKey().toString(), StandardCharsets.UTF_8)
+                    .putString(entry.getValue().getPackId(), StandardCharsets.UTF_8);
+                try (InputStream input = entry.getValue().getInputStream()) {
+                    hasher.putBytes(input.readAllBytes());
+                } catch (IOException e) {
+                    BlockExporter.LOGGER.debug("Couldn't read {} for the export manifest", entry.getKey(), e);
+                    hasher.putInt(-1);
+                }
+                count++;
+            }
+        }
+        BlockExporter.LOGGER.info("Fingerprinted {} model and texture resources in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+        return hasher.hash().toString();
+    }
+
+    private static final class HashingVertexConsumers implements VertexConsumerProvider, VertexConsumer {
+        private final Hasher hasher;
+
+        HashingVertexConsumers(Hasher hasher) {
+            this.hasher = hasher;
+        }
+
+        @Override
+        public VertexConsumer getBuffer(RenderLayer layer) {
+            // names the layer's pipeline and textures, e.g. the entity texture of a special model renderer
+            this.hasher.putString(layer.toString(), StandardCharsets.UTF_8);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer vertex(float x, float y, float z) {
+            this.hasher.putFloat(x).putFloat(y).putFloat(z);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer color(int red, int green, int blue, int alpha) {
+            this.hasher.putInt(red).putInt(green).putInt(blue).putInt(alpha);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer texture(float u, float v) {
+            this.hasher.putFloat(u).putFloat(v);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer overlay(int u, int v) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer light(int u, int v) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer normal(float x, float y, float z) {
+            this.hasher.putFloat(x).putFloat(y).putFloat(z);
+            return this;
+        }
+    }
+}
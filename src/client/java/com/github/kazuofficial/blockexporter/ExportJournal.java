@@ -0,0 +1,267 @@
+package com.github.kazuofficial.blockexporter;
+
+import com.google.common.hash.HashCode;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import net.minecraft.item.Item;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.Identifier;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only log of the items whose files are completely written, kept in
+ * the export directory while an export runs. The first line records the
+ * export settings and item selection, every following line one finished
+ * item: its bare id, or with deduplication a JSON object that also records
+ * per output size the item's pixel hash and the item it duplicates. A run
+ * that finishes deletes the journal; one that is cancelled or crashes
+ * leaves it behind so the next run can skip what is already done.
+ */
+public class ExportJournal implements AutoCloseable {
+    public static final String FILE_NAME = "export-journal.log";
+    private static final int FORMAT_VERSION = 1;
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    private final Path file;
+    private final Writer writer;
+    private final Map<Integer, Map<Identifier, ExportSink.StoredImage>> resumedImages;
+    private boolean closed = false;
+
+    private ExportJournal(Path file, Writer writer, Map<Integer, Map<Identifier, ExportSink.StoredImage>> resumedImages) {
+        this.file = file;
+        this.writer = writer;
+        this.resumedImages = resumedImages;
+    }
+
+    /**
+     * Only outputs that write each item to its own file as soon as it is
+     * rendered can be resumed; archives and atlas sheets are assembled at the end.
+     */
+    public static boolean supports(ExportConfig config) {
+        return config.sinkType() == ExportConfig.SinkType.DIRECTORY && config.outputMode() != ExportConfig.OutputMode.ATLAS;
+    }
+
+    /**
+     * Starts a fresh journal, replacing any left over from an earlier run.
+     */
+    public static ExportJournal start(ExportConfig config, String query) throws IOException {
+        Path file = config.exportDirectory().resolve(FILE_NAME);
+        Files.createDirectories(config.exportDirectory());
+        JsonObject header = new JsonObject();
+        header.addProperty("version", FORMAT_VERSION);
+        header.addProperty("query", query);
+        header.add("settings", writeSettings(config));
+
+        Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        writer.write(GSON.toJson(header) + "\n");
+        writer.flush();
+        return new ExportJournal(file, writer, Map.of());
+    }
+
+    /**
+     * Reads the journal left in {@code exportDirectory}, or returns null if
+     * there is none or it can't be used.
+     */
+    public static Snapshot read(Path exportDirectory) {
+        Path file = exportDirectory.resolve(FILE_NAME);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try {
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            // a crash can cut the last line short, and a cut off id might still parse as a different item
+            int end = content.lastIndexOf('\n');
+            if (end < 0) {
+                return null;
+            }
+            String[] lines = content.substring(0, end).split("\n");
+            long validLength = content.substring(0, end + 1).getBytes(StandardCharsets.UTF_8).length;
+
+            JsonObject header = JsonParser.parseString(lines[0]).getAsJsonObject();
+            if (header.get("version").getAsInt() != FORMAT_VERSION) {
+                BlockExporter.LOGGER.warn("Ignoring export journal with unsupported version: {}", file);
+                return null;
+            }
+            ExportConfig config = readSettings(header.getAsJsonObject("settings"), exportDirectory);
+            Set<Identifier> done = new HashSet<>();
+            Map<Integer, Map<Identifier, ExportSink.StoredImage>> images = new HashMap<>();
+            for (int i = 1; i < lines.length; i++) {
+                if (!lines[i].startsWith("{")) {
+                    Identifier id = Identifier.tryParse(lines[i]);
+                    if (id != null) {
+                        done.add(id);
+                    }
+                    continue;
+                }
+                JsonObject entry = JsonParser.parseString(lines[i]).getAsJsonObject();
+                Identifier id = Identifier.of(entry.get("item").getAsString());
+                for (Map.Entry<String, JsonElement> size : entry.getAsJsonObject("images").entrySet()) {
+                    JsonObject image = size.getValue().getAsJsonObject();
+                    JsonElement aliasOf = image.get("aliasOf");
+                    images.computeIfAbsent(Integer.parseInt(size.getKey()), key -> new HashMap<>())
+                        .put(id, new ExportSink.StoredImage(HashCode.fromString(image.get("hash").getAsString()),
+                            aliasOf != null ? Identifier.of(aliasOf.getAsString()) : null));
+                }
+                done.add(id);
+            }
+            return new Snapshot(file, validLength, config, header.get("query").getAsString(), Set.copyOf(done), images);
+        } catch (IOException | JsonParseException | IllegalStateException | IllegalArgumentException | NullPointerException e) {
+            BlockExporter.LOGGER.warn("Failed to read export journal, the export can't be resumed: {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Records {@code itemId} as done. {@code images} holds, per output size,
+     * how a deduplicating sink stored it, and is empty otherwise.
+     */
+    public synchronized void record(Identifier itemId, Map<Integer, ExportSink.StoredImage> images) {
+        if (this.closed) {
+            return;
+        }
+        String line = itemId.toString();
+        if (!images.isEmpty()) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("item", line);
+            JsonObject sizes = new JsonObject();
+            images.forEach((size, image) -> {
+                JsonObject stored = new JsonObject();
+                stored.addProperty("hash", image.pixelHash().toString());
+                if (image.aliasOf() != null) {
+                    stored.addProperty("aliasOf", image.aliasOf().toString());
+                }
+                sizes.add(Integer.toString(size), stored);
+            });
+            entry.add("images", sizes);
+            line = GSON.toJson(entry);
+        }
+        try {
+            // flushed per item so the entry survives a client crash right after the file landed
+            this.writer.write(line + "\n");
+            this.writer.flush();
+        } catch (IOException e) {
+            BlockExporter.LOGGER.warn("Failed to record {} in the export journal", itemId, e);
+        }
+    }
+
+    /**
+     * The deduplicated images the interrupted run journaled, per output size,
+     * for seeding the sinks of the run that resumes it. Empty for a fresh journal.
+     */
+    public Map<Integer, Map<Identifier, ExportSink.StoredImage>> getResumedImages() {
+        return this.resumedImages;
+    }
+
+    /**
+     * Closes and deletes the journal once the export it tracks has finished.
+     */
+    public synchronized void complete() throws IOException {
+        close();
+        Files.deleteIfExists(this.file);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.writer.close();
+    }
+
+    private static JsonObject writeSettings(ExportConfig config) {
+        JsonObject settings = new JsonObject();
+        settings.addProperty("textureSize", config.textureSize());
+        JsonArray sizes = new JsonArray();
+        config.outputSizes().forEach(sizes::add);
+        settings.add("outputSizes", sizes);
+        settings.addProperty("outputMode", config.outputMode().name());
+        settings.addProperty("incremental", config.incremental());
+        settings.addProperty("batchedRendering", config.batchedRendering());
+        settings.addProperty("readbackSlots", config.readbackSlots());
+        settings.addProperty("imageFormat", config.imageFormat().name());
+        settings.addProperty("pngCompression", config.pngOptions().compressionLevel());
+        settings.addProperty("pngFilter", config.pngOptions().filter().name());
+        settings.addProperty("pngPalette", config.pngOptions().palette());
+        settings.addProperty("sinkType", config.sinkType().name());
+        settings.addProperty("imageMemoryBudget", config.imageMemoryBudget());
+        settings.addProperty("deduplicate", config.deduplicate());
+        settings.addProperty("hardlinkDuplicates", config.hardlinkDuplicates());
+        settings.addProperty("animationFrames", config.animationFrames());
+        settings.addProperty("planRenderOrder", config.planRenderOrder());
+        return settings;
+    }
+
+    private static ExportConfig readSettings(JsonObject settings, Path exportDirectory) {
+        List<Integer> sizes = new ArrayList<>();
+        for (JsonElement size : settings.getAsJsonArray("outputSizes")) {
+            sizes.add(size.getAsInt());
+        }
+        return ExportConfig.builder()
+            .textureSize(settings.get("textureSize").getAsInt())
+            .outputSizes(sizes)
+            .outputMode(ExportConfig.OutputMode.valueOf(settings.get("outputMode").getAsString()))
+            .exportDirectory(exportDirectory)
+            .incremental(settings.get("incremental").getAsBoolean())
+            .batchedRendering(settings.get("batchedRendering").getAsBoolean())
+            .readbackSlots(settings.get("readbackSlots").getAsInt())
+            .imageFormat(ExportConfig.ImageFormat.valueOf(settings.get("imageFormat").getAsString()))
+            .pngOptions(new PngEncoder.Options(settings.get("pngCompression").getAsInt(),
+                PngEncoder.Filter.valueOf(settings.get("pngFilter").getAsString()),
+                settings.get("pngPalette").getAsBoolean()))
+            .sinkType(ExportConfig.SinkType.valueOf(settings.get("sinkType").getAsString()))
+            .imageMemoryBudget(settings.get("imageMemoryBudget").getAsLong())
+            .deduplicate(settings.get("deduplicate").getAsBoolean())
+            .hardlinkDuplicates(settings.get("hardlinkDuplicates").getAsBoolean())
+            .animationFrames(settings.get("animationFrames").getAsInt())
+            // journals written before the order could be chosen always planned it
+            .planRenderOrder(!settings.has("planRenderOrder") || settings.get("planRenderOrder").getAsBoolean())
+            .build();
+    }
+
+    /**
+     * What an interrupted export left behind: its settings, the search query
+     * that selected its items, the items already written, and how
+     * deduplication stored them.
+     */
+    public record Snapshot(Path file, long validLength, ExportConfig config, String query, Set<Identifier> done,
+                           Map<Integer, Map<Identifier, ExportSink.StoredImage>> images) {
+        public List<Item> selectRemaining() {
+            return ItemIndex.get().select(ItemIndex.Query.parse(this.query)).stream()
+                .filter(item -> !this.done.contains(Registries.ITEM.getId(item)))
+                .toList();
+        }
+
+        /**
+         * Continues the journal, appending to what the interrupted run recorded.
+         */
+        public ExportJournal reopen() throws IOException {
+            try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.WRITE)) {
+                channel.truncate(this.validLength);
+            }
+            Writer writer = Files.newBufferedWriter(this.file, StandardCharsets.UTF_8, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            return new ExportJournal(this.file, writer, this.images);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.kazuofficial.blockexporter;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import net.minecraft.util.Identifier;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ExportManifest {
+    public static final String FILE_NAME = "manifest.json";
+    private static final int FORMAT_VERSION = 1;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private final Path file;
+    private final Map<Integer, Map<String, Entry>> entriesBySize = new ConcurrentHashMap<>();
+
+    private ExportManifest(Path file) {
+        this.file = file;
+    }
+
+    public static ExportManifest load(Path exportDirectory) {
+        ExportManifest manifest = new ExportManifest(exportDirectory.resolve(FILE_NAME));
+        if (!Files.isRegularFile(manifest.file)) {
+            return manifest;
+        }
+
+        try (Reader reader = Files.newBufferedReader(manifest.file, StandardCharsets.UTF_8)) {
+            JsonObject root = JsonParser.parseReader(reader).getAsJsonObject();
+            if (root.get("version").getAsInt() != FORMAT_VERSION) {
+                BlockExporter.LOGGER.warn("Ignoring export manifest with unsupported version: {}", manifest.file);
+                return manifest;
+            }
+
+            for (Map.Entry<String, JsonElement> sizeEntry : root.getAsJsonObject("sizes").entrySet()) {
+                Map<String, Entry> entries = manifest.entries(Integer.parseInt(sizeEntry.getKey()));
+                for (Map.Entry<String, JsonElement> item : sizeEntry.getValue().getAsJsonObject().entrySet()) {
+                    JsonObject object = item.getValue().getAsJsonObject();
+                    entries.put(item.getKey(), new Entry(object.get("input").getAsString(), object.get("output").getAsString()));
+                }
+            }
+        } catch (IOException | JsonParseException | IllegalStateException | NullPointerException | NumberFormatException e) {
+            BlockExporter.LOGGER.warn("Failed to read export manifest, doing a full export: {}", manifest.file, e);
+            manifest.entriesBySize.clear();
+        }
+        return manifest;
+    }
+
+    public boolean isInputUnchanged(Identifier itemId, int size, String inputHash) {
+        Entry entry = entries(size).get(itemId.toString());
+        return entry != null && entry.input().equals(inputHash);
+    }
+
+    public boolean isOutputUnchanged(Identifier itemId, int size, String outputHash) {
+        Entry entry = entries(size).get(itemId.toString());
+        return entry != null && entry.output().equals(outputHash);
+    }
+
+    /**
+     * The pixel hash recorded for the item's file, or null if there is none.
+     */
+    public String getOutputHash(Identifier itemId, int size) {
+        Entry entry = entries(size).get(itemId.toString());
+        return entry != null ? entry.output() : null;
+    }
+
+    public void record(Identifier itemId, int size, String inputHash, String outputHash) {
+        entries(size).put(itemId.toString(), new Entry(inputHash, outputHash));
+    }
+
+    public void forget(Identifier itemId, int size) {
+        entries(size).remove(itemId.toString());
+    }
+
+    public void save() throws IOException {
+        JsonObject sizes = new JsonObject();
+        for (Map.Entry<Integer, Map<String, Entry>> sizeEntry : new TreeMap<>(this.entriesBySize).entrySet()) {
+            JsonObject items = new JsonObject();
+            for (Map.Entry<String, Entry> item : new TreeMap<>(sizeEntry.getValue()).entrySet()) {
+                JsonObject object = new JsonObject();
+                object.addProperty("input", item.getValue().input());
+                object.addProperty("output", item.getValue().output());
+                items.add(item.getKey(), object);
+            }
+            sizes.add(Integer.toString(sizeEntry.getKey()), items);
+        }
+
+        JsonObject root = new JsonObject();
+        root.addProperty("version", FORMAT_VERSION);
+        root.add("sizes", sizes);
+
+        Path tempFile = this.file.resolveSibling(FILE_NAME + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            GSON.toJson(root, writer);
+        }
+        Files.move(tempFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Map<String, Entry> entries(int size) {
+        return this.entriesBySize.computeIfAbsent(size, key -> new ConcurrentHashMap<>());
+    }
+
+    private record Entry(String input, String output) {
+    }
+}
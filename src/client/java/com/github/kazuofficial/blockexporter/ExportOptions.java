@@ -0,0 +1,114 @@
+package com.github.kazuofficial.blockexporter;
+
+public class ExportOptions {
+    private ExportConfig.ImageFormat imageFormat = ExportConfig.ImageFormat.PNG;
+    private int compressionLevel = PngEncoder.Options.DEFAULT.compressionLevel();
+    private PngEncoder.Filter pngFilter = PngEncoder.Options.DEFAULT.filter();
+    private boolean pngPalette = PngEncoder.Options.DEFAULT.palette();
+    private ExportConfig.SinkType sinkType = ExportConfig.SinkType.DIRECTORY;
+    private int frameBudgetMillis = 8;
+    private boolean deduplicate = false;
+    private boolean hardlinkDuplicates = false;
+    private int animationFrames = 1;
+    private boolean planRenderOrder = true;
+    private int imageMemoryMegabytes = (int) (ExportConfig.DEFAULT_IMAGE_MEMORY_BUDGET / (1024 * 1024));
+
+    public ExportConfig.ImageFormat getImageFormat() {
+        return this.imageFormat;
+    }
+
+    public void setImageFormat(ExportConfig.ImageFormat imageFormat) {
+        this.imageFormat = imageFormat;
+    }
+
+    public int getCompressionLevel() {
+        return this.compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public PngEncoder.Filter getPngFilter() {
+        return this.pngFilter;
+    }
+
+    public void setPngFilter(PngEncoder.Filter pngFilter) {
+        this.pngFilter = pngFilter;
+    }
+
+    public boolean isPngPalette() {
+        return this.pngPalette;
+    }
+
+    public void setPngPalette(boolean pngPalette) {
+        this.pngPalette = pngPalette;
+    }
+
+    public ExportConfig.SinkType getSinkType() {
+        return this.sinkType;
+    }
+
+    public void setSinkType(ExportConfig.SinkType sinkType) {
+        this.sinkType = sinkType;
+    }
+
+    public int getFrameBudgetMillis() {
+        return this.frameBudgetMillis;
+    }
+
+    public void setFrameBudgetMillis(int frameBudgetMillis) {
+        this.frameBudgetMillis = frameBudgetMillis;
+    }
+
+    public int getImageMemoryMegabytes() {
+        return this.imageMemoryMegabytes;
+    }
+
+    public void setImageMemoryMegabytes(int imageMemoryMegabytes) {
+        this.imageMemoryMegabytes = imageMemoryMegabytes;
+    }
+
+    public boolean isDeduplicate() {
+        return this.deduplicate;
+    }
+
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    public boolean isHardlinkDuplicates() {
+        return this.hardlinkDuplicates;
+    }
+
+    public void setHardlinkDuplicates(boolean hardlinkDuplicates) {
+        this.hardlinkDuplicates = hardlinkDuplicates;
+    }
+
+    public int getAnimationFrames() {
+        return this.animationFrames;
+    }
+
+    public void setAnimationFrames(int animationFrames) {
+        this.animationFrames = animationFrames;
+    }
+
+    public boolean isPlanRenderOrder() {
+        return this.planRenderOrder;
+    }
+
+    public void setPlanRenderOrder(boolean planRenderOrder) {
+        this.planRenderOrder = planRenderOrder;
+    }
+
+    public ExportConfig.Builder applyTo(ExportConfig.Builder builder) {
+        return builder.imageFormat(this.imageFormat)
+            .pngOptions(new PngEncoder.Options(this.compressionLevel, this.pngFilter, this.pngPalette))
+            .sinkType(this.sinkType)
+            .imageMemoryBudget(this.imageMemoryMegabytes * 1024L * 1024L)
+            .deduplicate(this.deduplicate)
+            .hardlinkDuplicates(this.hardlinkDuplicates)
+            .animationFrames(this.animationFrames)
+            .planRenderOrder(this.planRenderOrder);
+    }
+}
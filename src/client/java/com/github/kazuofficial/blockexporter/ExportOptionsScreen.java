@@ -0,0 +1,114 @@
+package com.github.kazuofficial.blockexporter;
+
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.gui.screen.Screen;
+import net.minecraft.client.gui.tooltip.Tooltip;
+import net.minecraft.client.gui.widget.ButtonWidget;
+import net.minecraft.client.gui.widget.CyclingButtonWidget;
+import net.minecraft.screen.ScreenTexts;
+import net.minecraft.text.Text;
+import net.minecraft.util.Colors;
+
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+public class ExportOptionsScreen extends Screen {
+    private static final int BUTTON_WIDTH = 220;
+    private static final int BUTTON_HEIGHT = 20;
+    private static final int ROW_SPACING = 24;
+
+    private final Screen parent;
+    private final ExportOptions options;
+    private int nextRowY;
+
+    public ExportOptionsScreen(Screen parent, ExportOptions options) {
+        super(Text.literal("Export Options"));
+        this.parent = parent;
+        this.options = options;
+    }
+
+    @Override
+    protected void init() {
+        super.init();
+        this.nextRowY = 50;
+
+        this.addRow(CyclingButtonWidget.<ExportConfig.ImageFormat>builder(format -> Text.literal(format.getDisplayName()))
+            .values(ExportConfig.ImageFormat.values())
+            .initially(this.options.getImageFormat())
+            .tooltip(format -> Tooltip.of(Text.literal("QOI and raw RGBA write much faster than PNG but few programs open them"))),
+            "Image Format", this.options::setImageFormat);
+
+        this.addRow(CyclingButtonWidget.<Integer>builder(level -> Text.literal(Integer.toString(level)))
+            .values(IntStream.rangeClosed(0, 9).boxed().toList())
+            .initially(this.options.getCompressionLevel()), "PNG Compression", this.options::setCompressionLevel);
+
+        this.addRow(CyclingButtonWidget.<PngEncoder.Filter>builder(filter -> Text.literal(filter.name().toLowerCase()))
+            .values(PngEncoder.Filter.values())
+            .initially(this.options.getPngFilter()), "PNG Filter", this.options::setPngFilter);
+
+        this.addRow(CyclingButtonWidget.onOffBuilder(this.options.isPngPalette()), "Indexed Color", this.options::setPngPalette);
+
+        this.addRow(CyclingButtonWidget.<ExportConfig.SinkType>builder(type -> Text.literal(type.getDisplayName()))
+            .values(ExportConfig.SinkType.values())
+            .initially(this.options.getSinkType()), "Output", this.options::setSinkType);
+
+        this.addRow(CyclingButtonWidget.onOffBuilder(this.options.isDeduplicate())
+            .tooltip(value -> Tooltip.of(Text.literal("Write identical renders once and list the other items in aliases.json"))),
+            "Deduplicate", this.options::setDeduplicate);
+
+        this.addRow(CyclingButtonWidget.onOffBuilder(this.options.isHardlinkDuplicates())
+            .tooltip(value -> Tooltip.of(Text.literal("Also hard link each duplicate item's file to the written image (folder output only)"))),
+            "Hard Link Duplicates", this.options::setHardlinkDuplicates);
+
+        this.addRow(CyclingButtonWidget.<Integer>builder(frames -> frames == 1 ? ScreenTexts.OFF : Text.literal(frames + " frames"))
+            .values(1, 8, 16, 32, 64)
+            .initially(this.options.getAnimationFrames())
+            .tooltip(frames -> Tooltip.of(Text.literal("Capture animated items over several ticks and save them as animated PNGs"))),
+            "Animation", this.options::setAnimationFrames);
+
+        this.addRow(CyclingButtonWidget.<Boolean>builder(planned -> Text.literal(planned ? "Grouped" : "Registry"))
+            .values(true, false)
+            .initially(this.options.isPlanRenderOrder())
+            .tooltip(planned -> Tooltip.of(Text.literal("Draw items with the same lighting and render layers back to back"))),
+            "Render Order", this.options::setPlanRenderOrder);
+
+        this.addRow(CyclingButtonWidget.<Integer>builder(millis -> Text.literal(millis + " ms"))
+            .values(4, 8, 16, 33, 50)
+            .initially(this.options.getFrameBudgetMillis())
+            .tooltip(millis -> Tooltip.of(Text.literal("Time spent rendering export items per frame; higher is faster but less responsive"))),
+            "Frame Budget", this.options::setFrameBudgetMillis);
+
+        this.addRow(CyclingButtonWidget.<Integer>builder(megabytes -> Text.literal(megabytes + " MB"))
+            .values(64, 128, 256, 512, 1024)
+            .initially(this.options.getImageMemoryMegabytes())
+            .tooltip(megabytes -> Tooltip.of(Text.literal("Maximum native memory held by rendered images waiting to be written"))),
+            "Image Memory", this.options::setImageMemoryMegabytes);
+
+        this.addDrawableChild(ButtonWidget.builder(ScreenTexts.DONE, button -> this.close())
+            .dimensions((this.width - BUTTON_WIDTH) / 2, this.height - 40, BUTTON_WIDTH, BUTTON_HEIGHT)
+            .build());
+    }
+
+    private <T> void addRow(CyclingButtonWidget.Builder<T> builder, String label, Consumer<T> setter) {
+        this.addDrawableChild(builder.build((this.width - BUTTON_WIDTH) / 2, this.nextRowY, BUTTON_WIDTH, BUTTON_HEIGHT,
+            Text.literal(label), (button, value) -> setter.accept(value)));
+        this.nextRowY += ROW_SPACING;
+    }
+
+    @Override
+    public void render(DrawContext context, int mouseX, int mouseY, float delta) {
+        this.renderInGameBackground(context);
+        context.drawCenteredTextWithShadow(this.textRenderer, this.title, this.width / 2, 25, Colors.WHITE);
+        super.render(context, mouseX, mouseY, delta);
+    }
+
+    @Override
+    public void close() {
+        this.client.setScreen(this.parent);
+    }
+
+    @Override
+    public boolean shouldPause() {
+        return true;
+    }
+}
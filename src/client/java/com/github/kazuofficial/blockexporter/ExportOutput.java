@@ -0,0 +1,49 @@
+package com.github.kazuofficial.blockexporter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public interface ExportOutput extends AutoCloseable {
+    void write(String name, byte[] data) throws IOException;
+
+    /**
+     * Writes the remaining bytes of each buffer, in order, as one file.
+     * Outputs that can write buffers directly override this to skip joining them.
+     */
+    default void write(String name, ByteBuffer... data) throws IOException {
+        byte[] joined = new byte[Math.toIntExact(ImageEncoder.length(data))];
+        int offset = 0;
+        for (ByteBuffer buffer : data) {
+            int length = buffer.remaining();
+            buffer.get(buffer.position(), joined, offset, length);
+            offset += length;
+        }
+        write(name, joined);
+    }
+
+    default boolean exists(String name) {
+        return false;
+    }
+
+    /**
+     * Makes {@code name} a hard link to the already written {@code target}.
+     * Returns false when the output can't link, in which case nothing is written.
+     */
+    default boolean link(String target, String name) throws IOException {
+        return false;
+    }
+
+    /**
+     * Removes {@code name} if an earlier write or run left it. Outputs that
+     * always start empty have nothing to remove.
+     */
+    default void delete(String name) throws IOException {
+    }
+
+    default void abort() {
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -2,15 +2,17 @@ package com.github.kazuofficial.blockexporter;
 
 import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.gui.screen.Screen;
+import net.minecraft.client.gui.tooltip.Tooltip;
 import net.minecraft.client.gui.widget.ButtonWidget;
+import net.minecraft.client.gui.widget.CyclingButtonWidget;
 import net.minecraft.client.gui.widget.SliderWidget;
+import net.minecraft.client.gui.widget.TextFieldWidget;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
-import net.minecraft.item.Items;
-import net.minecraft.registry.Registries;
 import net.minecraft.screen.ScreenTexts;
 import net.minecraft.text.Text;
 import net.minecraft.util.Colors;
+import net.minecraft.util.Formatting;
 import net.minecraft.util.Util;
 
 import java.io.IOException;
@@ -19,7 +21,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 
 public class ExportScreen extends Screen {
     private static final int PROGRESS_BAR_WIDTH = 280;
@@ -33,33 +35,44 @@ public class ExportScreen extends Screen {
     private static final int ITEM_FRAME_COLOR = 0xFF8B8B8B;
     private static final int ACCENT_COLOR = 0xFF4A90E2;
     
-    private static final int BATCH_SIZE = 32;
+    private static final int SLOWEST_ITEMS_SHOWN = 5;
+    private static final ExportOptions OPTIONS = new ExportOptions();
+    private static String searchQuery = "";
     
-    private final List<Item> allItems;
     private List<Item> itemsToExport;
     private boolean finishedWithErrors = false;
     private int failedItemCount = 0;
-    private int currentItemIndex = 0;
-    private final AtomicInteger completedItems = new AtomicInteger(0);
     private boolean isExporting = false;
     private ButtonWidget startCancelButton;
     private ButtonWidget doneButton;
-    private ItemRenderer itemRenderer;
+    private ButtonWidget resumeButton;
+    private ExportJournal.Snapshot resumeSnapshot;
+    private ExportSession exportSession;
+    private boolean stopping = false;
+    private List<ExportStats.ItemReport> slowestItems = List.of();
     private int exportSize = 64;
+    private ExportConfig.OutputMode outputMode = ExportConfig.OutputMode.FILES;
+    private boolean incremental = true;
+    private boolean allSizes = false;
     private Path exportDirectory;
     private SliderWidget sizeSlider;
+    private CyclingButtonWidget<ExportConfig.OutputMode> outputModeButton;
+    private CyclingButtonWidget<Boolean> incrementalButton;
+    private CyclingButtonWidget<Boolean> allSizesButton;
+    private ButtonWidget optionsButton;
+    private TextFieldWidget searchField;
     private static final List<Integer> EXPORT_SIZES = Arrays.asList(16, 32, 64, 128, 256, 512, 1024);
 
     public ExportScreen() {
         super(Text.translatable("screen.blockexporter.title"));
-        this.allItems = new ArrayList<>(Registries.ITEM.stream().filter(item -> item != Items.AIR).toList());
-        this.itemsToExport = new ArrayList<>(this.allItems);
+        this.itemsToExport = ItemIndex.get().select(ItemIndex.Query.parse(searchQuery));
+        this.stopping = ExportSession.isClosing();
     }
 
     @Override
     protected void init() {
         super.init();
-        this.exportDirectory = this.client.runDirectory.toPath().resolve("item_exports");
+        this.exportDirectory = ExportConfig.defaultExportDirectory();
         
         int buttonWidth = 100;
         int buttonHeight = 24;
@@ -67,8 +80,17 @@ public class ExportScreen extends Screen {
         int totalWidth = buttonWidth * 3 + spacing * 2;
         int buttonsX = (this.width - totalWidth) / 2;
         
-        int sliderWidth = 240;
-        this.sizeSlider = new SliderWidget(this.width / 2 - sliderWidth / 2, this.height - 75, sliderWidth, 20, Text.empty(), 0) {
+        this.searchField = new TextFieldWidget(this.textRenderer, buttonsX, this.height - 125, totalWidth, 20, Text.literal("Search"));
+        this.searchField.setMaxLength(256);
+        this.searchField.setText(searchQuery);
+        this.searchField.setPlaceholder(Text.literal("Search items, @namespace, #tag").formatted(Formatting.DARK_GRAY));
+        this.searchField.setTooltip(Tooltip.of(Text.literal("Only matching items are exported. @minecraft picks a namespace, "
+            + "#minecraft:logs an item tag; other words must appear in the item id or name")));
+        this.searchField.setChangedListener(this::updateSelection);
+        this.addDrawableChild(this.searchField);
+
+        int sliderWidth = totalWidth - 24;
+        this.sizeSlider = new SliderWidget(buttonsX, this.height - 75, sliderWidth, 20, Text.empty(), 0) {
             {
                 int initialSizeIndex = EXPORT_SIZES.indexOf(exportSize);
                 if (initialSizeIndex == -1) {
@@ -93,34 +115,85 @@ public class ExportScreen extends Screen {
         };
         this.addDrawableChild(this.sizeSlider);
 
+        this.optionsButton = this.addDrawableChild(ButtonWidget.builder(Text.literal("⚙"),
+                button -> this.client.setScreen(new ExportOptionsScreen(this, OPTIONS)))
+            .dimensions(buttonsX + sliderWidth + 4, this.height - 75, 20, 20)
+            .tooltip(Tooltip.of(Text.literal("Export Options")))
+            .build());
+
+        this.outputModeButton = this.addDrawableChild(CyclingButtonWidget.<ExportConfig.OutputMode>builder(mode -> Text.literal(mode.getDisplayName()))
+            .values(ExportConfig.OutputMode.values())
+            .initially(this.outputMode)
+            .build(buttonsX, this.height - 100, buttonWidth, 20, Text.literal("Output"),
+                (button, mode) -> this.outputMode = mode));
+
+        this.incrementalButton = this.addDrawableChild(CyclingButtonWidget.onOffBuilder(this.incremental)
+            .build(buttonsX + buttonWidth + spacing, this.height - 100, buttonWidth, 20, Text.literal("Incremental"),
+                (button, value) -> this.incremental = value));
+
+        this.allSizesButton = this.addDrawableChild(CyclingButtonWidget.onOffBuilder(this.allSizes)
+            .tooltip(value -> Tooltip.of(Text.literal("Render once at the selected size and downsample every smaller size into its own folder")))
+            .build(buttonsX + (buttonWidth + spacing) * 2, this.height - 100, buttonWidth, 20, Text.literal("All Sizes"),
+                (button, value) -> this.allSizes = value));
+
         this.startCancelButton = this.addDrawableChild(ButtonWidget.builder(
             Text.literal(isExporting ? "Cancel Export" : "▶ Start Export"),
             button -> {
                 if (isExporting) {
                     isExporting = false;
+                    if (this.exportSession != null) {
+                        // writers stop in the background, starting again is blocked until they have
+                        this.exportSession.closeAsync();
+                    }
+                    this.stopping = true;
                     this.updateButtonStates();
                     BlockExporter.LOGGER.info("Export cancelled by user.");
                 } else {
-                    isExporting = true;
-                    this.finishedWithErrors = false;
-                    this.failedItemCount = 0;
-                    this.itemsToExport = new ArrayList<>(this.allItems);
-
-                    if (this.itemRenderer != null) {
-                        this.itemRenderer.close();
+                    if (this.exportSession != null) {
+                        this.exportSession.closeAsync();
                     }
-                    this.itemRenderer = new ItemRenderer(this.exportSize);
-                    this.currentItemIndex = 0;
-                    this.completedItems.set(0);
-                    BlockExporter.LOGGER.info("Starting fast batch export of {} items with batch size {}",
-                        itemsToExport.size(), BATCH_SIZE);
-                    this.updateButtonStates();
+                    ExportConfig config = OPTIONS.applyTo(ExportConfig.builder())
+                        .textureSize(this.exportSize)
+                        .outputSizes(this.allSizes
+                            ? EXPORT_SIZES.stream().filter(size -> size <= this.exportSize).toList()
+                            : List.of(this.exportSize))
+                        .outputMode(this.outputMode)
+                        .exportDirectory(this.exportDirectory)
+                        .incremental(this.incremental)
+                        .build();
+                    beginExport(ExportSession.start(config, this.itemsToExport, searchQuery,
+                        TimeUnit.MILLISECONDS.toNanos(OPTIONS.getFrameBudgetMillis())));
+                    BlockExporter.LOGGER.info("Starting fast batch export of {} items with a {} ms frame budget",
+                        itemsToExport.size(), OPTIONS.getFrameBudgetMillis());
                 }
             })
             .dimensions(buttonsX, this.height - 40, buttonWidth, buttonHeight)
             .build()
         );
 
+        this.resumeButton = this.addDrawableChild(ButtonWidget.builder(
+            Text.literal("⟳ Resume"),
+            button -> {
+                if (this.resumeSnapshot == null) {
+                    return;
+                }
+                if (this.exportSession != null) {
+                    this.exportSession.closeAsync();
+                }
+                try {
+                    beginExport(ExportSession.resume(this.resumeSnapshot, TimeUnit.MILLISECONDS.toNanos(OPTIONS.getFrameBudgetMillis())));
+                } catch (IOException e) {
+                    BlockExporter.LOGGER.error("Failed to resume export", e);
+                    this.exportSession = null;
+                    this.refreshResumeSnapshot();
+                    this.updateButtonStates();
+                }
+            })
+            .dimensions(buttonsX - spacing - 64, this.height - 40, 64, buttonHeight)
+            .build()
+        );
+        refreshResumeSnapshot();
+
         this.addDrawableChild(ButtonWidget.builder(
                 Text.literal("📁 Open Folder"),
                 button -> {
@@ -144,20 +217,74 @@ public class ExportScreen extends Screen {
         updateButtonStates();
     }
 
+    private void beginExport(ExportSession session) {
+        this.exportSession = session;
+        this.itemsToExport = session.getItems();
+        this.isExporting = true;
+        this.finishedWithErrors = false;
+        this.failedItemCount = 0;
+        this.slowestItems = List.of();
+        updateButtonStates();
+    }
+
+    private void refreshResumeSnapshot() {
+        this.resumeSnapshot = ExportJournal.read(this.exportDirectory);
+        this.resumeButton.setTooltip(this.resumeSnapshot != null
+            ? Tooltip.of(Text.literal("Continue the interrupted export in this folder with its original settings ("
+                + this.resumeSnapshot.done().size() + " items already written)"))
+            : Tooltip.of(Text.literal("No interrupted export to resume")));
+    }
+
+    private void updateSelection(String query) {
+        if (isExporting) {
+            return;
+        }
+        searchQuery = query;
+        this.itemsToExport = ItemIndex.get().select(ItemIndex.Query.parse(query));
+        // results of a previous run no longer describe the selection
+        if (this.exportSession != null) {
+            this.exportSession.closeAsync();
+            this.exportSession = null;
+        }
+        this.finishedWithErrors = false;
+        this.failedItemCount = 0;
+        this.slowestItems = List.of();
+        updateButtonStates();
+    }
+
     private void updateButtonStates() {
         if (isExporting) {
             startCancelButton.setMessage(Text.literal("Cancel Export"));
+            startCancelButton.active = true;
+            resumeButton.active = false;
             sizeSlider.active = false;
+            outputModeButton.active = false;
+            incrementalButton.active = false;
+            allSizesButton.active = false;
+            optionsButton.active = false;
+            searchField.setEditable(false);
             doneButton.active = false;
         } else {
-            startCancelButton.setMessage(Text.literal("▶ Start Export"));
+            // a cancelled export may still be writing into the folder a new one would use
+            boolean closing = ExportSession.isClosing();
+            startCancelButton.setMessage(Text.literal(closing ? "Stopping Export..." : "▶ Start Export"));
             sizeSlider.active = true;
+            outputModeButton.active = true;
+            incrementalButton.active = true;
+            allSizesButton.active = true;
+            optionsButton.active = true;
+            searchField.setEditable(true);
+            startCancelButton.active = !closing && !itemsToExport.isEmpty();
+            resumeButton.active = !closing && resumeSnapshot != null;
             doneButton.active = true;
         }
     }
 
     @Override
     public void render(DrawContext context, int mouseX, int mouseY, float delta) {
+        if (isExporting && exportSession != null) {
+            exportSession.renderNextBatch();
+        }
         this.renderInGameBackground(context);
         
         int panelHeight = 240;
@@ -166,9 +293,12 @@ public class ExportScreen extends Screen {
         context.drawCenteredTextWithShadow(this.textRenderer, this.title, this.width / 2, panelY + PANEL_PADDING, ACCENT_COLOR);
         
         int itemSectionY = panelY + PANEL_PADDING + 25;
-        int displayIndex = Math.min(currentItemIndex, itemsToExport.size() - 1);
-        if (displayIndex >= 0 && displayIndex < itemsToExport.size()) {
-            ItemStack stack = new ItemStack(itemsToExport.get(displayIndex));
+        int currentItemIndex = exportSession != null ? exportSession.getCurrentItemIndex() : 0;
+        // the session reorders its items once planning finishes
+        List<Item> displayItems = exportSession != null ? exportSession.getItems() : itemsToExport;
+        int displayIndex = Math.min(currentItemIndex, displayItems.size() - 1);
+        if (displayIndex >= 0 && displayIndex < displayItems.size()) {
+            ItemStack stack = new ItemStack(displayItems.get(displayIndex));
             
             int itemFrameSize = ITEM_SIZE + 8;
             int itemFrameX = (this.width - itemFrameSize) / 2;
@@ -209,7 +339,7 @@ public class ExportScreen extends Screen {
 
         boolean isComplete = currentItemIndex >= itemsToExport.size() && !isExporting;
 
-        int completed = isComplete ? itemsToExport.size() - failedItemCount : completedItems.get();
+        int completed = isComplete ? itemsToExport.size() - failedItemCount : (exportSession != null ? exportSession.getCompletedCount() : 0);
         float progress = itemsToExport.isEmpty() ? 0 : (float) completed / itemsToExport.size();
         int progressWidth = (int) (PROGRESS_BAR_WIDTH * progress);
         if (progressWidth > 0) {
@@ -219,59 +349,68 @@ public class ExportScreen extends Screen {
 
         String progressText = String.format("%d / %d items (%.1f%%)",
             completed, itemsToExport.size(), progress * 100);
+        int skipped = exportSession != null ? exportSession.getSkippedCount() : 0;
+        if (skipped > 0) {
+            progressText += String.format(", %d unchanged", skipped);
+        }
+        int unsupported = exportSession != null ? exportSession.getUnsupportedCount() : 0;
+        if (unsupported > 0) {
+            progressText += String.format(", %d unsupported", unsupported);
+        }
+        if (isComplete && exportSession != null && exportSession.getItemsPerSecond() > 0) {
+            progressText += String.format(", %.0f items/s", exportSession.getItemsPerSecond());
+        }
         context.drawCenteredTextWithShadow(this.textRenderer, progressText, 
             this.width / 2, progressY + PROGRESS_BAR_HEIGHT + 8, Colors.WHITE);
         
-        String statusText = isExporting ? "⚡ Exporting..." : (isComplete ? (finishedWithErrors ? "Finished with errors" : "Export Complete!") : "Ready to export");
+        String statusText = isExporting ? (exportSession != null && exportSession.isPlanning() ? "⚡ Planning render order..." : "⚡ Exporting...") : (isComplete ? (finishedWithErrors ? "Finished with errors" : "Export Complete!") : "Ready to export");
+        if (itemsToExport.isEmpty()) {
+            statusText = "No items match the search";
+        }
+        if (isExporting && exportSession != null) {
+            ImageMemoryBudget budget = exportSession.getMemoryBudget();
+            statusText += String.format(" (%d / %d MB buffered)",
+                budget.getUsedBytes() / (1024 * 1024), budget.getLimitBytes() / (1024 * 1024));
+        }
         int statusColor = isExporting ? 0xFFFFAA00 : (isComplete ? (finishedWithErrors ? 0xFFFF5555 : 0xFF00FF00) : Colors.LIGHT_GRAY);
         context.drawCenteredTextWithShadow(this.textRenderer, Text.literal(statusText), 
             this.width / 2, progressY + PROGRESS_BAR_HEIGHT + 25, statusColor);
 
+        if (!slowestItems.isEmpty()) {
+            int lineY = 10;
+            context.drawTextWithShadow(this.textRenderer, Text.literal("Slowest items:"), 10, lineY, Colors.LIGHT_GRAY);
+            for (ExportStats.ItemReport item : slowestItems) {
+                lineY += 11;
+                context.drawTextWithShadow(this.textRenderer, Text.literal(String.format("%.1f ms  %s (%s)",
+                    item.totalNanos() / 1_000_000.0, item.itemId(), item.slowestStage().getDisplayName())), 10, lineY, Colors.GRAY);
+            }
+        }
+
         super.render(context, mouseX, mouseY, delta);
     }
 
     @Override
     public void tick() {
         super.tick();
-        if (isExporting) {
-            if (currentItemIndex < itemsToExport.size()) {
-                List<ItemStack> batch = new ArrayList<>();
-                int batchEnd = Math.min(currentItemIndex + BATCH_SIZE, itemsToExport.size());
-
-                for (int i = currentItemIndex; i < batchEnd; i++) {
-                    batch.add(new ItemStack(itemsToExport.get(i)));
-                }
-
-                if (itemRenderer != null && !batch.isEmpty()) {
-                    itemRenderer.exportItemsBatch(batch, completedItems);
-                }
-
-                currentItemIndex = batchEnd;
-
-            } else if (completedItems.get() >= itemsToExport.size()) {
-                isExporting = false;
-                if (itemRenderer != null) {
-                    List<ItemStack> currentFailedItems = itemRenderer.getFailedExports();
-                    if (!currentFailedItems.isEmpty()) {
-                        this.finishedWithErrors = true;
-                        this.failedItemCount = currentFailedItems.size();
-                    }
-                }
-                updateButtonStates();
-
-                if (!this.finishedWithErrors) {
-                    BlockExporter.LOGGER.info("Fast batch export completed! Exported {} items", itemsToExport.size());
-                } else {
-                    BlockExporter.LOGGER.warn("Export finished with {} failures.", this.failedItemCount);
-                }
-            }
+        if (this.stopping && !ExportSession.isClosing()) {
+            this.stopping = false;
+            refreshResumeSnapshot();
+            updateButtonStates();
+        }
+        if (isExporting && exportSession != null && exportSession.update()) {
+            isExporting = false;
+            this.finishedWithErrors = exportSession.isFinishedWithErrors();
+            this.failedItemCount = exportSession.getFailedExports().size();
+            this.slowestItems = exportSession.getSlowestItems(SLOWEST_ITEMS_SHOWN);
+            refreshResumeSnapshot();
+            updateButtonStates();
         }
     }
 
     @Override
     public void close() {
-        if (this.itemRenderer != null) {
-            this.itemRenderer.close();
+        if (this.exportSession != null) {
+            this.exportSession.closeAsync();
         }
         super.close();
     }
@@ -0,0 +1,236 @@
+package com.github.kazuofficial.blockexporter;
+
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ExportSession implements AutoCloseable {
+    private static CompletableFuture<Void> closing = CompletableFuture.completedFuture(null);
+
+    private final ItemRenderer itemRenderer;
+    private final BatchScheduler batchScheduler;
+    private final long frameBudgetNanos;
+    private final AtomicInteger completedItems = new AtomicInteger(0);
+    private List<Item> items;
+    private RenderOrder renderOrder;
+    private long renderStartNanos;
+    private double itemsPerSecond;
+    private int currentItemIndex = 0;
+    private CompletableFuture<Void> finishFuture;
+    private boolean done = false;
+    private boolean finishedWithErrors = false;
+
+    private ExportSession(ExportConfig config, List<Item> items, long frameBudgetNanos, ExportJournal journal) {
+        this.items = List.copyOf(items);
+        // meshes are captured without touching the GPU, so only rendered exports gain from grouping draw state
+        this.renderOrder = config.planRenderOrder() && config.outputMode() != ExportConfig.OutputMode.GLTF ? new RenderOrder(items) : null;
+        this.frameBudgetNanos = frameBudgetNanos;
+        try {
+            this.itemRenderer = new ItemRenderer(config, journal);
+        } catch (RuntimeException e) {
+            closeJournal(journal);
+            throw e;
+        }
+        this.batchScheduler = new BatchScheduler(frameBudgetNanos);
+    }
+
+    /**
+     * Starts a new export of {@code items}. {@code query} is the search that
+     * selected them, kept in the journal so the export can be resumed.
+     */
+    public static ExportSession start(ExportConfig config, List<Item> items, String query, long frameBudgetNanos) {
+        ExportJournal journal = null;
+        if (ExportJournal.supports(config)) {
+            try {
+                journal = ExportJournal.start(config, query);
+            } catch (IOException e) {
+                BlockExporter.LOGGER.warn("Failed to create export journal, this export can't be resumed", e);
+            }
+        }
+        return new ExportSession(config, items, frameBudgetNanos, journal);
+    }
+
+    /**
+     * Continues an interrupted export with its recorded settings, skipping
+     * every item the journal lists as written.
+     */
+    public static ExportSession resume(ExportJournal.Snapshot snapshot, long frameBudgetNanos) throws IOException {
+        List<Item> remaining = snapshot.selectRemaining();
+        BlockExporter.LOGGER.info("Resuming export into {}: {} items already written, {} left",
+            snapshot.config().exportDirectory(), snapshot.done().size(), remaining.size());
+        return new ExportSession(snapshot.config(), remaining, frameBudgetNanos, snapshot.reopen());
+    }
+
+    private static void closeJournal(ExportJournal journal) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            BlockExporter.LOGGER.warn("Failed to close export journal", e);
+        }
+    }
+
+    public void renderNextBatch() {
+        // the first frames of an incremental export pass while its resources are fingerprinted
+        if (this.done || !this.itemRenderer.isReady()) {
+            return;
+        }
+        // planning takes the frame budget rendering would otherwise get, so a large registry doesn't stall a frame
+        if (this.renderOrder != null) {
+            if (!this.renderOrder.plan(this.frameBudgetNanos)) {
+                return;
+            }
+            this.items = this.renderOrder.getOrder();
+        }
+        if (this.renderStartNanos == 0) {
+            this.renderStartNanos = System.nanoTime();
+        }
+
+        int batchSize = this.currentItemIndex < this.items.size()
+            ? this.batchScheduler.nextBatchSize(this.itemRenderer.getPendingWrites(), this.itemRenderer.getWriteQueueCapacity())
+            : 0;
+        if (batchSize == 0) {
+            // animated items still need their frame for this tick
+            this.itemRenderer.advanceAnimations(this.completedItems);
+            return;
+        }
+
+        List<ItemStack> batch = new ArrayList<>();
+        int batchEnd = Math.min(this.currentItemIndex + batchSize, this.items.size());
+        for (int i = this.currentItemIndex; i < batchEnd; i++) {
+            batch.add(new ItemStack(this.items.get(i)));
+        }
+
+        long start = System.nanoTime();
+        int consumed = this.itemRenderer.exportItemsBatch(batch, this.completedItems);
+        this.batchScheduler.record(consumed, System.nanoTime() - start);
+        this.currentItemIndex += consumed;
+    }
+
+    /**
+     * Finalizes the export once every item has been written. Returns true when
+     * the session is complete and its results can be read.
+     */
+    public boolean update() {
+        if (this.done) {
+            return true;
+        }
+        if (this.currentItemIndex < this.items.size() || this.completedItems.get() < this.items.size()) {
+            return false;
+        }
+
+        if (this.finishFuture == null) {
+            this.finishFuture = this.itemRenderer.finish();
+        }
+        if (!this.finishFuture.isDone()) {
+            return false;
+        }
+
+        this.done = true;
+        int failed = this.itemRenderer.getFailedExports().size();
+        if (failed > 0) {
+            this.finishedWithErrors = true;
+        }
+        if (this.finishFuture.isCompletedExceptionally()) {
+            BlockExporter.LOGGER.error("Failed to finalize export output", this.finishFuture.exceptionNow());
+            this.finishedWithErrors = true;
+        }
+
+        long renderNanos = Math.max(1, System.nanoTime() - this.renderStartNanos);
+        this.itemsPerSecond = this.items.size() * 1e9 / renderNanos;
+        BlockExporter.LOGGER.info("Rendered {} items in {} ms ({} items/s) in {} order, planning took {} ms",
+            this.items.size(), renderNanos / 1_000_000, String.format(Locale.ROOT, "%.1f", this.itemsPerSecond),
+            this.renderOrder != null ? "planned" : "registry", this.renderOrder != null ? this.renderOrder.getPlanningNanos() / 1_000_000 : 0);
+        if (!this.finishedWithErrors) {
+            BlockExporter.LOGGER.info("Fast batch export completed! Exported {} items ({} unchanged, {} unsupported)",
+                this.items.size(), this.itemRenderer.getSkippedCount(), this.itemRenderer.getUnsupportedCount());
+        } else {
+            BlockExporter.LOGGER.warn("Export finished with {} failures.", failed);
+        }
+        return true;
+    }
+
+    /**
+     * The items in the order they are rendered, which only settles once
+     * {@link #isPlanning()} is false.
+     */
+    public List<Item> getItems() {
+        return this.items;
+    }
+
+    public boolean isPlanning() {
+        return this.renderOrder != null && this.renderStartNanos == 0;
+    }
+
+    /**
+     * Items per second from the first rendered batch until the output was
+     * finished, so planning time is left out. Set once the session is done.
+     */
+    public double getItemsPerSecond() {
+        return this.itemsPerSecond;
+    }
+
+    public int getCurrentItemIndex() {
+        return this.currentItemIndex;
+    }
+
+    public int getCompletedCount() {
+        return this.completedItems.get();
+    }
+
+    public int getSkippedCount() {
+        return this.itemRenderer.getSkippedCount();
+    }
+
+    public int getUnsupportedCount() {
+        return this.itemRenderer.getUnsupportedCount();
+    }
+
+    public List<ItemStack> getFailedExports() {
+        return this.itemRenderer.getFailedExports();
+    }
+
+    public List<ExportStats.ItemReport> getSlowestItems(int count) {
+        return this.itemRenderer.getStats().getSlowestItems(count);
+    }
+
+    public ImageMemoryBudget getMemoryBudget() {
+        return this.itemRenderer.getMemoryBudget();
+    }
+
+    public boolean isDone() {
+        return this.done;
+    }
+
+    public boolean isFinishedWithErrors() {
+        return this.finishedWithErrors;
+    }
+
+    /**
+     * Cancels the export without waiting for its writers, see
+     * {@link ItemRenderer#closeAsync()}. Until they have stopped,
+     * {@link #isClosing()} is true and no new export should start.
+     */
+    public CompletableFuture<Void> closeAsync() {
+        CompletableFuture<Void> closed = this.itemRenderer.closeAsync();
+        closing = CompletableFuture.allOf(closing, closed);
+        return closed;
+    }
+
+    public static boolean isClosing() {
+        return !closing.isDone();
+    }
+
+    @Override
+    public void close() {
+        closeAsync().join();
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.kazuofficial.blockexporter;
+
+import com.google.common.hash.HashCode;
+
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.util.Identifier;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface ExportSink {
+    void write(Identifier itemId, NativeImage image) throws IOException;
+
+    /**
+     * Writes an animated item. Sinks that can't store animations keep the first frame.
+     */
+    default void writeAnimation(Identifier itemId, List<NativeImage> frames, int frameDelayMillis) throws IOException {
+        write(itemId, frames.getFirst());
+    }
+
+    default boolean hasOutput(Identifier itemId) {
+        return false;
+    }
+
+    /**
+     * Records that the file an earlier run wrote for {@code itemId} is still
+     * current and stays in place, although nothing is written for it now.
+     */
+    default void retain(Identifier itemId, HashCode pixelHash) {
+    }
+
+    /**
+     * Records that an earlier run of this export stored {@code alias} as a
+     * duplicate of {@code canonical}, whose file is still in place.
+     */
+    default void retainAlias(Identifier alias, Identifier canonical, HashCode pixelHash) {
+    }
+
+    /**
+     * How a deduplicating sink stored {@code itemId}, or null if this sink
+     * doesn't deduplicate or hasn't seen the item.
+     */
+    default StoredImage getStoredImage(Identifier itemId) {
+        return null;
+    }
+
+    /**
+     * Records that {@code alias} rendered identically to the already written
+     * {@code canonical} item. Called from {@link #finish()} of a deduplicating sink,
+     * also for items that were written earlier and turned out to duplicate a lower item id.
+     */
+    default void writeAlias(Identifier alias, Identifier canonical) throws IOException {
+    }
+
+    default void finish() throws IOException {
+    }
+
+    /**
+     * Releases what the sink holds when the export is cancelled instead of finished.
+     */
+    default void abort() {
+    }
+
+    /**
+     * The pixel hash of a stored item and, while it duplicates a lower item
+     * id, that item. {@code aliasOf} is null for an item with its own file.
+     */
+    record StoredImage(HashCode pixelHash, Identifier aliasOf) {
+    }
+
+    static ExportSink create(ExportConfig config, int size, ExportOutput output, ExportStats stats, ImageMemoryBudget memoryBudget) {
+        String prefix = config.prefixForSize(size);
+        ImageEncoder encoder = ImageEncoder.create(config);
+        ExportSink sink = switch (config.outputMode()) {
+            case FILES -> new FilesExportSink(output, prefix, encoder, config.hardlinkDuplicates(), stats);
+            case ATLAS -> new AtlasExportSink(output, prefix, size, encoder, stats, memoryBudget);
+            case GLTF -> throw new IllegalArgumentException("glTF exports write meshes, not images");
+        };
+        return config.deduplicate() ? new DeduplicatingExportSink(sink, size + "px") : sink;
+    }
+}
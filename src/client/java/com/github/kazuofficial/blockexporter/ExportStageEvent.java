@@ -0,0 +1,27 @@
+package com.github.kazuofficial.blockexporter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("blockexporter.ExportStage")
+@Label("Export Stage")
+@Category("BlockExporter")
+@Description("Time spent in one stage of exporting an item or grid")
+@StackTrace(false)
+class ExportStageEvent extends Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Item")
+    String item;
+
+    // JFR already gives every event an implicit "duration" field, so this one needs its own name
+    @Label("Stage Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long stageNanos;
+}
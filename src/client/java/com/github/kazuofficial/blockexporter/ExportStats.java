@@ -0,0 +1,274 @@
+package com.github.kazuofficial.blockexporter;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import net.minecraft.util.Identifier;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ExportStats {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+    private static final int REPORTED_SLOWEST_ITEMS = 20;
+
+    public enum Stage {
+        MODEL("model", true),
+        DRAW("draw", true),
+        READBACK("readback", false),
+        PIXELS("pixels", false),
+        SLICE("slice", true),
+        ENCODE("encode", true),
+        WRITE("write", true);
+
+        private final String displayName;
+        private final boolean perItem;
+
+        Stage(String displayName, boolean perItem) {
+            this.displayName = displayName;
+            this.perItem = perItem;
+        }
+
+        public String getDisplayName() {
+            return this.displayName;
+        }
+    }
+
+    private final Map<Stage, Histogram> stages = new EnumMap<>(Stage.class);
+    private final Map<Identifier, ItemTimings> items = new ConcurrentHashMap<>();
+    private final Map<Identifier, String> unsupportedItems = new ConcurrentSkipListMap<>();
+    private final Histogram queueDepth = new Histogram();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    public ExportStats() {
+        for (Stage stage : Stage.values()) {
+            this.stages.put(stage, new Histogram());
+        }
+    }
+
+    /**
+     * Records one stage of work. {@code itemId} may be null for work shared
+     * by several items, such as a grid readback or an atlas sheet.
+     */
+    public void record(Identifier itemId, Stage stage, long nanos) {
+        this.stages.get(stage).add(nanos);
+        if (itemId != null && stage.perItem) {
+            this.items.computeIfAbsent(itemId, id -> new ItemTimings()).add(stage, nanos);
+        }
+
+        ExportStageEvent event = new ExportStageEvent();
+        if (event.isEnabled()) {
+            event.stage = stage.getDisplayName();
+            event.item = itemId != null ? itemId.toString() : null;
+            event.stageNanos = nanos;
+            event.commit();
+        }
+    }
+
+    public void recordQueueDepth(int depth) {
+        this.queueDepth.add(depth);
+    }
+
+    public void recordBytesWritten(long bytes) {
+        this.bytesWritten.add(bytes);
+    }
+
+    /**
+     * Records an item the export can't produce output for, with the reason
+     * shown in the report. These aren't failures, the item is left out on purpose.
+     */
+    public void recordUnsupported(Identifier itemId, String reason) {
+        this.unsupportedItems.put(itemId, reason);
+    }
+
+    public int getUnsupportedCount() {
+        return this.unsupportedItems.size();
+    }
+
+    public long getBytesWritten() {
+        return this.bytesWritten.sum();
+    }
+
+    public List<ItemReport> getSlowestItems(int count) {
+        return this.items.entrySet().stream()
+            .map(entry -> entry.getValue().toReport(entry.getKey()))
+            .sorted(Comparator.comparingLong(ItemReport::totalNanos).reversed())
+            .limit(count)
+            .toList();
+    }
+
+    public void writeReport(Path directory) throws IOException {
+        long elapsedNanos = System.nanoTime() - this.startNanos;
+
+        JsonObject root = new JsonObject();
+        root.addProperty("items", this.items.size());
+        root.addProperty("elapsedMs", millis(elapsedNanos));
+        root.addProperty("bytesWritten", this.bytesWritten.sum());
+
+        JsonObject stageObject = new JsonObject();
+        for (Map.Entry<Stage, Histogram> entry : this.stages.entrySet()) {
+            Histogram histogram = entry.getValue();
+            JsonObject object = new JsonObject();
+            object.addProperty("count", histogram.count());
+            object.addProperty("totalMs", millis(histogram.sum()));
+            object.addProperty("meanMs", millis(histogram.mean()));
+            object.addProperty("p50Ms", millis(histogram.percentile(0.50)));
+            object.addProperty("p90Ms", millis(histogram.percentile(0.90)));
+            object.addProperty("p99Ms", millis(histogram.percentile(0.99)));
+            object.addProperty("maxMs", millis(histogram.max()));
+            stageObject.add(entry.getKey().getDisplayName(), object);
+        }
+        root.add("stages", stageObject);
+
+        JsonObject queueObject = new JsonObject();
+        queueObject.addProperty("samples", this.queueDepth.count());
+        queueObject.addProperty("mean", this.queueDepth.mean());
+        queueObject.addProperty("max", this.queueDepth.max());
+        root.add("writeQueueDepth", queueObject);
+
+        JsonArray slowest = new JsonArray();
+        for (ItemReport item : getSlowestItems(REPORTED_SLOWEST_ITEMS)) {
+            JsonObject object = new JsonObject();
+            object.addProperty("item", item.itemId().toString());
+            object.addProperty("totalMs", millis(item.totalNanos()));
+            object.addProperty("slowestStage", item.slowestStage().getDisplayName());
+            object.addProperty("slowestStageMs", millis(item.slowestStageNanos()));
+            slowest.add(object);
+        }
+        root.add("slowestItems", slowest);
+
+        JsonArray unsupported = new JsonArray();
+        this.unsupportedItems.forEach((itemId, reason) -> {
+            JsonObject object = new JsonObject();
+            object.addProperty("item", itemId.toString());
+            object.addProperty("reason", reason);
+            unsupported.add(object);
+        });
+        root.add("unsupportedItems", unsupported);
+
+        Files.writeString(directory.resolve("export-report.json"), GSON.toJson(root), StandardCharsets.UTF_8);
+        writeItemCsv(directory.resolve("export-report.csv"));
+        BlockExporter.LOGGER.info("Export took {} ms, wrote {} bytes; report saved to {}",
+            Math.round(millis(elapsedNanos)), this.bytesWritten.sum(), directory.resolve("export-report.json"));
+    }
+
+    private void writeItemCsv(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("item");
+            for (Stage stage : Stage.values()) {
+                if (stage.perItem) {
+                    writer.write("," + stage.getDisplayName() + "_ms");
+                }
+            }
+            writer.write(",total_ms,slowest_stage\n");
+
+            List<ItemReport> reports = getSlowestItems(Integer.MAX_VALUE);
+            for (ItemReport report : reports) {
+                ItemTimings timings = this.items.get(report.itemId());
+                writer.write(report.itemId().toString());
+                for (Stage stage : Stage.values()) {
+                    if (stage.perItem) {
+                        writer.write(String.format(Locale.ROOT, ",%.3f", millis(timings.get(stage))));
+                    }
+                }
+                writer.write(String.format(Locale.ROOT, ",%.3f,%s\n", millis(report.totalNanos()), report.slowestStage().getDisplayName()));
+            }
+        }
+    }
+
+    private static double millis(double nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    public record ItemReport(Identifier itemId, long totalNanos, Stage slowestStage, long slowestStageNanos) {
+    }
+
+    private static final class ItemTimings {
+        private final AtomicLongArray nanos = new AtomicLongArray(Stage.values().length);
+
+        void add(Stage stage, long value) {
+            this.nanos.addAndGet(stage.ordinal(), value);
+        }
+
+        long get(Stage stage) {
+            return this.nanos.get(stage.ordinal());
+        }
+
+        ItemReport toReport(Identifier itemId) {
+            long total = 0;
+            Stage slowest = Stage.MODEL;
+            for (Stage stage : Stage.values()) {
+                long value = get(stage);
+                total += value;
+                if (value > get(slowest)) {
+                    slowest = stage;
+                }
+            }
+            return new ItemReport(itemId, total, slowest, get(slowest));
+        }
+    }
+
+    /**
+     * Lock-free histogram with power-of-two buckets; percentiles are reported
+     * as the upper bound of the bucket they fall into.
+     */
+    private static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void add(long value) {
+            long clamped = Math.max(0, value);
+            this.buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(clamped) - (clamped == 0 ? 0 : 1));
+            this.count.increment();
+            this.sum.add(clamped);
+            this.max.accumulateAndGet(clamped, Math::max);
+        }
+
+        long count() {
+            return this.count.sum();
+        }
+
+        long sum() {
+            return this.sum.sum();
+        }
+
+        long max() {
+            return this.max.get();
+        }
+
+        double mean() {
+            long count = count();
+            return count == 0 ? 0 : (double) sum() / count;
+        }
+
+        long percentile(double fraction) {
+            long target = (long) Math.ceil(count() * fraction);
+            long seen = 0;
+            for (int i = 0; i < this.buckets.length(); i++) {
+                seen += this.buckets.get(i);
+                if (seen >= target && seen > 0) {
+                    return Math.min(max(), i >= Long.SIZE - 2 ? Long.MAX_VALUE : (2L << i) - 1);
+                }
+            }
+            return max();
+        }
+    }
+}
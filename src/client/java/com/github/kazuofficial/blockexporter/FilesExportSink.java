@@ -0,0 +1,109 @@
+package com.github.kazuofficial.blockexporter;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.util.Identifier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class FilesExportSink implements ExportSink {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+    private static final String ALIASES_FILE = "aliases.json";
+
+    private final ExportOutput output;
+    private final String prefix;
+    private final ImageEncoder encoder;
+    private final boolean hardlinkAliases;
+    private final ExportStats stats;
+    private final Map<Identifier, Identifier> aliases = new TreeMap<>();
+    private int linkedAliases = 0;
+
+    public FilesExportSink(ExportOutput output, String prefix, ImageEncoder encoder, boolean hardlinkAliases, ExportStats stats) {
+        this.output = output;
+        this.prefix = prefix;
+        this.encoder = encoder;
+        this.hardlinkAliases = hardlinkAliases;
+        this.stats = stats;
+    }
+
+    public static String fileName(Identifier itemId, String extension) {
+        return itemId.getNamespace() + "_" + itemId.getPath() + "." + extension;
+    }
+
+    public String fileName(Identifier itemId) {
+        return fileName(itemId, this.encoder.getExtension());
+    }
+
+    @Override
+    public boolean hasOutput(Identifier itemId) {
+        return this.output.exists(this.prefix + fileName(itemId));
+    }
+
+    @Override
+    public void write(Identifier itemId, NativeImage image) throws IOException {
+        String name = this.prefix + fileName(itemId);
+        long start = System.nanoTime();
+        ByteBuffer[] data = this.encoder.encodeImage(ImagePixels.view(image), image.getWidth(), image.getHeight());
+        long length = ImageEncoder.length(data);
+        long encoded = System.nanoTime();
+        this.output.write(name, data);
+        this.stats.record(itemId, ExportStats.Stage.ENCODE, encoded - start);
+        this.stats.record(itemId, ExportStats.Stage.WRITE, System.nanoTime() - encoded);
+        this.stats.recordBytesWritten(length);
+        BlockExporter.LOGGER.debug("Async exported: {}", name);
+    }
+
+    @Override
+    public void writeAnimation(Identifier itemId, List<NativeImage> frames, int frameDelayMillis) throws IOException {
+        NativeImage first = frames.getFirst();
+        String name = this.prefix + fileName(itemId);
+        long start = System.nanoTime();
+        ByteBuffer[] data = this.encoder.encodeAnimation(frames.stream().map(ImagePixels::view).toList(),
+            first.getWidth(), first.getHeight(), frameDelayMillis);
+        long length = ImageEncoder.length(data);
+        long encoded = System.nanoTime();
+        this.output.write(name, data);
+        this.stats.record(itemId, ExportStats.Stage.ENCODE, encoded - start);
+        this.stats.record(itemId, ExportStats.Stage.WRITE, System.nanoTime() - encoded);
+        this.stats.recordBytesWritten(length);
+        BlockExporter.LOGGER.debug("Async exported {} frames: {}", frames.size(), name);
+    }
+
+    @Override
+    public void writeAlias(Identifier alias, Identifier canonical) throws IOException {
+        this.aliases.put(alias, canonical);
+        String name = this.prefix + fileName(alias);
+        if (this.hardlinkAliases && this.output.link(this.prefix + fileName(canonical), name)) {
+            this.linkedAliases++;
+        } else {
+            // a file from an earlier run, or from before a lower item id matched it, would contradict aliases.json
+            this.output.delete(name);
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        // the index always describes this run, never what an earlier one deduplicated
+        if (this.aliases.isEmpty()) {
+            this.output.delete(this.prefix + ALIASES_FILE);
+            return;
+        }
+
+        JsonObject root = new JsonObject();
+        for (Map.Entry<Identifier, Identifier> entry : this.aliases.entrySet()) {
+            root.addProperty(entry.getKey().toString(), fileName(entry.getValue()));
+        }
+        this.output.write(this.prefix + ALIASES_FILE, GSON.toJson(root).getBytes(StandardCharsets.UTF_8));
+        if (this.hardlinkAliases && this.linkedAliases < this.aliases.size()) {
+            BlockExporter.LOGGER.warn("Only {} of {} duplicate images could be hard linked", this.linkedAliases, this.aliases.size());
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.github.kazuofficial.blockexporter;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes a {@link CapturedMesh} as a binary glTF 2.0 file with a single mesh
+ * whose materials all sample one externally referenced texture.
+ */
+public final class GltfEncoder {
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    private static final int GLB_MAGIC = 0x46546C67;
+    private static final int GLB_VERSION = 2;
+    private static final int CHUNK_JSON = 0x4E4F534A;
+    private static final int CHUNK_BIN = 0x004E4942;
+
+    private static final int ARRAY_BUFFER = 34962;
+    private static final int ELEMENT_ARRAY_BUFFER = 34963;
+    private static final int FLOAT = 5126;
+    private static final int UNSIGNED_INT = 5125;
+    private static final int TRIANGLES = 4;
+    private static final int NEAREST = 9728;
+    private static final int CLAMP_TO_EDGE = 33071;
+    // Minecraft's cutout layers discard texels below this alpha
+    private static final float ALPHA_CUTOFF = 0.1F;
+
+    private GltfEncoder() {
+    }
+
+    public static byte[] encode(CapturedMesh mesh, String name, String textureUri) {
+        Layout layout = new Layout();
+        JsonArray primitives = new JsonArray();
+        Map<CapturedMesh.AlphaMode, Integer> materialIndices = new EnumMap<>(CapturedMesh.AlphaMode.class);
+        JsonArray materials = new JsonArray();
+
+        for (CapturedMesh.Primitive primitive : mesh.primitives()) {
+            JsonObject attributes = new JsonObject();
+            attributes.addProperty("POSITION", layout.addPositions(primitive.positions(), primitive.vertexCount()));
+            attributes.addProperty("NORMAL", layout.addVertexFloats(primitive.normals(), primitive.vertexCount(), 3, "VEC3"));
+            attributes.addProperty("TEXCOORD_0", layout.addVertexFloats(primitive.uvs(), primitive.vertexCount(), 2, "VEC2"));
+            attributes.addProperty("COLOR_0", layout.addVertexFloats(primitive.colors(), primitive.vertexCount(), 4, "VEC4"));
+
+            Integer material = materialIndices.get(primitive.alphaMode());
+            if (material == null) {
+                material = materials.size();
+                materialIndices.put(primitive.alphaMode(), material);
+                materials.add(material(primitive.alphaMode()));
+            }
+
+            JsonObject object = new JsonObject();
+            object.add("attributes", attributes);
+            object.addProperty("indices", layout.addIndices(primitive.indices()));
+            object.addProperty("material", material);
+            object.addProperty("mode", TRIANGLES);
+            primitives.add(object);
+        }
+
+        JsonObject root = new JsonObject();
+        JsonObject asset = new JsonObject();
+        asset.addProperty("version", "2.0");
+        asset.addProperty("generator", "BlockExporter");
+        root.add("asset", asset);
+        root.addProperty("scene", 0);
+
+        JsonArray sceneNodes = new JsonArray();
+        sceneNodes.add(0);
+        JsonObject scene = new JsonObject();
+        scene.add("nodes", sceneNodes);
+        root.add("scenes", single(scene));
+
+        JsonObject node = new JsonObject();
+        node.addProperty("name", name);
+        node.addProperty("mesh", 0);
+        root.add("nodes", single(node));
+
+        JsonObject meshObject = new JsonObject();
+        meshObject.addProperty("name", name);
+        meshObject.add("primitives", primitives);
+        root.add("meshes", single(meshObject));
+        root.add("materials", materials);
+
+        JsonObject texture = new JsonObject();
+        texture.addProperty("sampler", 0);
+        texture.addProperty("source", 0);
+        root.add("textures", single(texture));
+
+        // pixel art has to stay sharp however far the viewer zooms in
+        JsonObject sampler = new JsonObject();
+        sampler.addProperty("magFilter", NEAREST);
+        sampler.addProperty("minFilter", NEAREST);
+        sampler.addProperty("wrapS", CLAMP_TO_EDGE);
+        sampler.addProperty("wrapT", CLAMP_TO_EDGE);
+        root.add("samplers", single(sampler));
+
+        JsonObject image = new JsonObject();
+        image.addProperty("uri", textureUri);
+        root.add("images", single(image));
+
+        byte[] binary = layout.data.toByteArray();
+        JsonObject buffer = new JsonObject();
+        buffer.addProperty("byteLength", binary.length);
+        root.add("buffers", single(buffer));
+        root.add("bufferViews", layout.bufferViews);
+        root.add("accessors", layout.accessors);
+
+        return glb(GSON.toJson(root).getBytes(StandardCharsets.UTF_8), binary);
+    }
+
+    private static JsonObject material(CapturedMesh.AlphaMode alphaMode) {
+        JsonObject baseColorTexture = new JsonObject();
+        baseColorTexture.addProperty("index", 0);
+        JsonObject pbr = new JsonObject();
+        pbr.add("baseColorTexture", baseColorTexture);
+        pbr.addProperty("metallicFactor", 0.0F);
+        pbr.addProperty("roughnessFactor", 1.0F);
+
+        JsonObject material = new JsonObject();
+        material.addProperty("name", alphaMode.name().toLowerCase(Locale.ROOT));
+        material.add("pbrMetallicRoughness", pbr);
+        material.addProperty("alphaMode", alphaMode.name());
+        if (alphaMode == CapturedMesh.AlphaMode.MASK) {
+            material.addProperty("alphaCutoff", ALPHA_CUTOFF);
+        }
+        return material;
+    }
+
+    private static JsonArray single(JsonObject object) {
+        JsonArray array = new JsonArray();
+        array.add(object);
+        return array;
+    }
+
+    private static byte[] glb(byte[] json, byte[] binary) {
+        int jsonLength = align(json.length);
+        int binaryLength = align(binary.length);
+        ByteBuffer out = ByteBuffer.allocate(12 + 8 + jsonLength + 8 + binaryLength).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(GLB_MAGIC).putInt(GLB_VERSION).putInt(out.capacity());
+
+        out.putInt(jsonLength).putInt(CHUNK_JSON).put(json);
+        for (int i = json.length; i < jsonLength; i++) {
+            out.put((byte) ' ');
+        }
+        // the binary chunk is padded with zeros, which a fresh buffer already holds
+        out.putInt(binaryLength).putInt(CHUNK_BIN).put(binary);
+        return out.array();
+    }
+
+    private static int align(int length) {
+        return (length + 3) & ~3;
+    }
+
+    private static final class Layout {
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private final JsonArray bufferViews = new JsonArray();
+        private final JsonArray accessors = new JsonArray();
+
+        int addPositions(float[] positions, int vertexCount) {
+            float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+            float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+            for (int i = 0; i < vertexCount * 3; i++) {
+                min[i % 3] = Math.min(min[i % 3], positions[i]);
+                max[i % 3] = Math.max(max[i % 3], positions[i]);
+            }
+
+            int accessor = addVertexFloats(positions, vertexCount, 3, "VEC3");
+            JsonObject object = this.accessors.get(accessor).getAsJsonObject();
+            object.add("min", toArray(min));
+            object.add("max", toArray(max));
+            return accessor;
+        }
+
+        int addVertexFloats(float[] values, int vertexCount, int components, String type) {
+            ByteBuffer bytes = ByteBuffer.allocate(vertexCount * components * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.asFloatBuffer().put(values, 0, vertexCount * components);
+            return addAccessor(bytes.array(), ARRAY_BUFFER, FLOAT, vertexCount, type);
+        }
+
+        int addIndices(int[] indices) {
+            ByteBuffer bytes = ByteBuffer.allocate(indices.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.asIntBuffer().put(indices);
+            return addAccessor(bytes.array(), ELEMENT_ARRAY_BUFFER, UNSIGNED_INT, indices.length, "SCALAR");
+        }
+
+        private int addAccessor(byte[] bytes, int target, int componentType, int count, String type) {
+            // every attribute is made of 4 byte components, so views stay aligned without padding
+            JsonObject view = new JsonObject();
+            view.addProperty("buffer", 0);
+            view.addProperty("byteOffset", this.data.size());
+            view.addProperty("byteLength", bytes.length);
+            view.addProperty("target", target);
+            this.data.writeBytes(bytes);
+            this.bufferViews.add(view);
+
+            JsonObject accessor = new JsonObject();
+            accessor.addProperty("bufferView", this.bufferViews.size() - 1);
+            accessor.addProperty("componentType", componentType);
+            accessor.addProperty("count", count);
+            accessor.addProperty("type", type);
+            this.accessors.add(accessor);
+            return this.accessors.size() - 1;
+        }
+
+        private static JsonArray toArray(float[] values) {
+            JsonArray array = new JsonArray();
+            for (float value : values) {
+                array.add(value);
+            }
+            return array;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.kazuofficial.blockexporter;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.util.Identifier;
+
+import java.io.IOException;
+
+/**
+ * Writes captured item meshes as {@code .glb} files next to one shared
+ * {@value #ATLAS_FILE} that every mesh references for its texture.
+ */
+public class GltfExportSink {
+    public static final String ATLAS_FILE = "block_atlas.png";
+
+    private final ExportOutput output;
+    private final PngEncoder encoder;
+    private final ExportStats stats;
+
+    public GltfExportSink(ExportOutput output, PngEncoder encoder, ExportStats stats) {
+        this.output = output;
+        this.encoder = encoder;
+        this.stats = stats;
+    }
+
+    public static String fileName(Identifier itemId) {
+        return itemId.getNamespace() + "_" + itemId.getPath() + ".glb";
+    }
+
+    public boolean hasOutput(Identifier itemId) {
+        return this.output.exists(fileName(itemId)) && this.output.exists(ATLAS_FILE);
+    }
+
+    /**
+     * Writes one item's mesh and returns a hash of the written file.
+     */
+    public HashCode write(Identifier itemId, CapturedMesh mesh) throws IOException {
+        long start = System.nanoTime();
+        byte[] glb = GltfEncoder.encode(mesh, itemId.toString(), ATLAS_FILE);
+        long encoded = System.nanoTime();
+        this.output.write(fileName(itemId), glb);
+        this.stats.record(itemId, ExportStats.Stage.ENCODE, encoded - start);
+        this.stats.record(itemId, ExportStats.Stage.WRITE, System.nanoTime() - encoded);
+        this.stats.recordBytesWritten(glb.length);
+        BlockExporter.LOGGER.debug("Async exported mesh: {}", fileName(itemId));
+        return Hashing.murmur3_128().hashBytes(glb);
+    }
+
+    public void writeAtlas(NativeImage atlas) throws IOException {
+        byte[] png = this.encoder.encode(ImagePixels.view(atlas), atlas.getWidth(), atlas.getHeight());
+        this.output.write(ATLAS_FILE, png);
+        this.stats.recordBytesWritten(png.length);
+        BlockExporter.LOGGER.info("Exported {}x{} block atlas for meshes", atlas.getWidth(), atlas.getHeight());
+    }
+}
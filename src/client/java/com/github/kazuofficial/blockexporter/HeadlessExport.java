@@ -0,0 +1,211 @@
+package com.github.kazuofficial.blockexporter;
+
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandManager;
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback;
+import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.item.Item;
+import net.minecraft.text.Text;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs exports without {@link ExportScreen}, either from the
+ * {@code /blockexporter export} client command or from the
+ * {@code -Dblockexporter.export=...} launch property.
+ */
+public final class HeadlessExport {
+    public static final String LAUNCH_PROPERTY = "blockexporter.export";
+
+    // no screen is drawn, so the whole client tick can go to rendering items
+    private static final long TICK_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long PROGRESS_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private static String launchArguments;
+    private static ExportArguments pendingArguments;
+    private static ExportSession session;
+    private static boolean exitWhenDone;
+    private static long lastProgressLog;
+
+    private HeadlessExport() {
+    }
+
+    public static void register() {
+        launchArguments = System.getProperty(LAUNCH_PROPERTY);
+
+        ClientCommandRegistrationCallback.EVENT.register((dispatcher, registryAccess) -> dispatcher.register(
+            ClientCommandManager.literal("blockexporter")
+                .then(ClientCommandManager.literal("export")
+                    .executes(context -> runCommand(context, ""))
+                    .then(ClientCommandManager.argument("options", StringArgumentType.greedyString())
+                        .executes(context -> runCommand(context, StringArgumentType.getString(context, "options")))))
+                .then(ClientCommandManager.literal("resume")
+                    .executes(context -> runResume(context, ExportConfig.defaultExportDirectory()))
+                    .then(ClientCommandManager.argument("dir", StringArgumentType.greedyString())
+                        .executes(context -> runResume(context, MinecraftClient.getInstance().runDirectory.toPath()
+                            .resolve(Path.of(StringArgumentType.getString(context, "dir")))))))
+                .then(ClientCommandManager.literal("cancel")
+                    .executes(context -> {
+                        if (session == null) {
+                            context.getSource().sendError(Text.literal("No export is running"));
+                            return 0;
+                        }
+                        cancel();
+                        context.getSource().sendFeedback(Text.literal("Export cancelled"));
+                        return 1;
+                    }))));
+
+        ClientTickEvents.END_CLIENT_TICK.register(HeadlessExport::tick);
+    }
+
+    public static boolean isRunning() {
+        return session != null;
+    }
+
+    private static int runCommand(CommandContext<FabricClientCommandSource> context, String input) {
+        if (session != null) {
+            context.getSource().sendError(Text.literal("An export is already running"));
+            return 0;
+        }
+        if (ExportSession.isClosing()) {
+            context.getSource().sendError(Text.literal("The cancelled export is still stopping its writers, try again in a moment"));
+            return 0;
+        }
+
+        ExportArguments arguments;
+        try {
+            arguments = ExportArguments.parse(input);
+        } catch (IllegalArgumentException e) {
+            context.getSource().sendError(Text.literal(e.getMessage()));
+            context.getSource().sendError(Text.literal("Usage: /blockexporter export " + ExportArguments.USAGE));
+            return 0;
+        }
+
+        int itemCount;
+        try {
+            itemCount = start(arguments);
+        } catch (RuntimeException e) {
+            BlockExporter.LOGGER.error("Failed to start headless export", e);
+            context.getSource().sendError(Text.literal("Failed to start export: " + e.getMessage()));
+            return 0;
+        }
+        context.getSource().sendFeedback(Text.literal("Exporting " + itemCount + " items to " + arguments.config().exportDirectory()));
+        return itemCount;
+    }
+
+    private static int runResume(CommandContext<FabricClientCommandSource> context, Path directory) {
+        if (session != null) {
+            context.getSource().sendError(Text.literal("An export is already running"));
+            return 0;
+        }
+        if (ExportSession.isClosing()) {
+            context.getSource().sendError(Text.literal("The cancelled export is still stopping its writers, try again in a moment"));
+            return 0;
+        }
+
+        ExportJournal.Snapshot snapshot = ExportJournal.read(directory);
+        if (snapshot == null) {
+            context.getSource().sendError(Text.literal("No interrupted export to resume in " + directory));
+            return 0;
+        }
+        try {
+            session = ExportSession.resume(snapshot, TICK_BUDGET_NANOS);
+        } catch (IOException | RuntimeException e) {
+            BlockExporter.LOGGER.error("Failed to resume headless export", e);
+            context.getSource().sendError(Text.literal("Failed to resume export: " + e.getMessage()));
+            return 0;
+        }
+        exitWhenDone = false;
+        lastProgressLog = System.nanoTime();
+        context.getSource().sendFeedback(Text.literal("Resuming export into " + directory + ": "
+            + session.getItems().size() + " items left, " + snapshot.done().size() + " already written"));
+        return session.getItems().size();
+    }
+
+    private static int start(ExportArguments arguments) {
+        List<Item> items = arguments.selectItems();
+        session = ExportSession.start(arguments.config(), items, arguments.query().format(), TICK_BUDGET_NANOS);
+        exitWhenDone = arguments.exitWhenDone();
+        lastProgressLog = System.nanoTime();
+        BlockExporter.LOGGER.info("Starting headless export of {} items at {} into {}",
+            items.size(), arguments.config().outputSizes(), arguments.config().exportDirectory());
+        return items.size();
+    }
+
+    private static void cancel() {
+        // the command returns right away, a write stuck in I/O is given up on in the background
+        session.closeAsync();
+        session = null;
+        BlockExporter.LOGGER.info("Headless export cancelled.");
+    }
+
+    private static void tick(MinecraftClient client) {
+        if (session == null) {
+            startFromLaunchProperty(client);
+        }
+        if (session == null) {
+            return;
+        }
+
+        session.renderNextBatch();
+
+        long now = System.nanoTime();
+        if (now - lastProgressLog >= PROGRESS_LOG_INTERVAL_NANOS) {
+            lastProgressLog = now;
+            BlockExporter.LOGGER.info("Exported {} / {} items ({} unchanged, {} MB buffered)",
+                session.getCompletedCount(), session.getItems().size(), session.getSkippedCount(),
+                session.getMemoryBudget().getUsedBytes() / (1024 * 1024));
+        }
+
+        if (session.update()) {
+            boolean failed = session.isFinishedWithErrors();
+            session.close();
+            session = null;
+            if (exitWhenDone) {
+                BlockExporter.LOGGER.info("Headless export {}, stopping client.", failed ? "finished with errors" : "complete");
+                client.scheduleStop();
+            }
+        }
+    }
+
+    private static void startFromLaunchProperty(MinecraftClient client) {
+        if (launchArguments == null || client.getOverlay() != null) {
+            return;
+        }
+
+        if (pendingArguments == null) {
+            try {
+                pendingArguments = ExportArguments.parse(launchArguments);
+            } catch (IllegalArgumentException e) {
+                BlockExporter.LOGGER.error("Invalid -D{} value '{}': {}", LAUNCH_PROPERTY, launchArguments, e.getMessage());
+                BlockExporter.LOGGER.error("Expected: {}", ExportArguments.USAGE);
+                launchArguments = null;
+                return;
+            }
+        }
+
+        // item tags are only known once a world has sent its tag data
+        if (pendingArguments.needsWorld() && client.world == null) {
+            return;
+        }
+
+        ExportArguments arguments = pendingArguments;
+        launchArguments = null;
+        pendingArguments = null;
+        try {
+            start(arguments);
+        } catch (RuntimeException e) {
+            BlockExporter.LOGGER.error("Failed to start headless export", e);
+            if (arguments.exitWhenDone()) {
+                client.scheduleStop();
+            }
+        }
+    }
+}
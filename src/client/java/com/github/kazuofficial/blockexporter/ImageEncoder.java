@@ -0,0 +1,40 @@
+package com.github.kazuofficial.blockexporter;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Turns RGBA pixels into the contents of one image file. The file comes back
+ * as buffers that are written one after another, so formats that store the
+ * pixels unchanged can hand the source buffer to the output without copying
+ * it. Returned buffers may share memory with the input and are only valid
+ * until the pixels they were encoded from are released.
+ */
+public interface ImageEncoder {
+    String getExtension();
+
+    ByteBuffer[] encodeImage(ByteBuffer rgba, int width, int height);
+
+    /**
+     * Encodes an animation. Formats that can't store animations keep the first frame.
+     */
+    default ByteBuffer[] encodeAnimation(List<ByteBuffer> frames, int width, int height, int frameDelayMillis) {
+        return encodeImage(frames.getFirst(), width, height);
+    }
+
+    static ImageEncoder create(ExportConfig config) {
+        return switch (config.imageFormat()) {
+            case PNG -> new PngEncoder(config.pngOptions());
+            case QOI -> new QoiEncoder();
+            case RAW -> new RawRgbaEncoder();
+        };
+    }
+
+    static long length(ByteBuffer[] data) {
+        long length = 0;
+        for (ByteBuffer buffer : data) {
+            length += buffer.remaining();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.kazuofficial.blockexporter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ImageMemoryBudget {
+    private final long limitBytes;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong residentBytes = new AtomicLong();
+
+    public ImageMemoryBudget(long limitBytes) {
+        if (limitBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + limitBytes);
+        }
+        this.limitBytes = limitBytes;
+    }
+
+    /**
+     * Reserves {@code bytes} if they fit. A reservation larger than the whole
+     * budget is still granted while nothing else is in flight, so a single
+     * oversized image can never stall the export. Resident memory counts
+     * against the limit but doesn't block that single reservation.
+     */
+    public boolean tryAcquire(long bytes) {
+        while (true) {
+            long resident = this.residentBytes.get();
+            long used = this.usedBytes.get();
+            if (used > resident && used + bytes > this.limitBytes) {
+                return false;
+            }
+            if (this.usedBytes.compareAndSet(used, used + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long bytes) {
+        long remaining = this.usedBytes.addAndGet(-bytes);
+        if (remaining < 0) {
+            throw new IllegalStateException("Released more image memory than was reserved: " + remaining);
+        }
+    }
+
+    /**
+     * Counts memory that stays allocated for most of the export, like atlas
+     * sheets being filled. It is always granted, since the images it holds
+     * are already rendered, and makes the rendering side wait for the rest.
+     */
+    public void acquireResident(long bytes) {
+        this.usedBytes.addAndGet(bytes);
+        this.residentBytes.addAndGet(bytes);
+    }
+
+    public void releaseResident(long bytes) {
+        this.residentBytes.addAndGet(-bytes);
+        release(bytes);
+    }
+
+    public long getUsedBytes() {
+        return this.usedBytes.get();
+    }
+
+    public long getLimitBytes() {
+        return this.limitBytes;
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.kazuofficial.blockexporter;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import net.minecraft.client.texture.NativeImage;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public final class ImagePixels {
+    private static final HashFunction PIXEL_HASH = Hashing.murmur3_128();
+
+    private ImagePixels() {
+    }
+
+    public static ByteBuffer view(NativeImage image) {
+        int size = image.getWidth() * image.getHeight() * image.getFormat().getChannelCount();
+        return MemoryUtil.memByteBuffer(image.getPointer(), size);
+    }
+
+    public static HashCode hash(List<NativeImage> frames) {
+        if (frames.size() == 1) {
+            return hash(frames.getFirst());
+        }
+        return Hashing.combineOrdered(frames.stream().map(ImagePixels::hash).toList());
+    }
+
+    public static HashCode hash(NativeImage image) {
+        return PIXEL_HASH.newHasher()
+            .putInt(image.getWidth())
+            .putInt(image.getHeight())
+            .putBytes(view(image))
+            .hash();
+    }
+}
@@ -0,0 +1,307 @@
+package com.github.kazuofficial.blockexporter;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.item.Item;
+import net.minecraft.item.Items;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.registry.tag.TagKey;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lookup tables over the item registry for selecting what to export. The
+ * index is built once and shared by every screen and command; it is only
+ * rebuilt when the registry or the client language changes, and tag
+ * membership is cached until the next tag reload.
+ */
+public final class ItemIndex {
+    private static final int GRAM = 3;
+
+    private static ItemIndex instance;
+
+    private final List<Item> items;
+    private final String language;
+    private final String[] searchText;
+    private final Map<String, BitSet> namespaces = new HashMap<>();
+    private final Map<String, int[]> trigrams;
+    private final String[] words;
+    private final int[] wordItems;
+    private final Map<TagKey<Item>, BitSet> tags = new ConcurrentHashMap<>();
+
+    private ItemIndex(List<Item> items, String language) {
+        this.items = items;
+        this.language = language;
+        this.searchText = new String[items.size()];
+
+        Map<String, IntArrayList> postings = new HashMap<>();
+        List<WordEntry> wordEntries = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            Identifier id = Registries.ITEM.getId(item);
+            String name = item.getName().getString().toLowerCase(Locale.ROOT);
+            this.namespaces.computeIfAbsent(id.getNamespace(), ns -> new BitSet()).set(i);
+
+            // ids and names are joined by a character no query term can contain, so no match spans both
+            String text = id + "\n" + name;
+            this.searchText[i] = text;
+            Set<String> seen = new LinkedHashSet<>();
+            for (int start = 0; start + GRAM <= text.length(); start++) {
+                seen.add(text.substring(start, start + GRAM));
+            }
+            for (String gram : seen) {
+                postings.computeIfAbsent(gram, key -> new IntArrayList()).add(i);
+            }
+
+            Set<String> itemWords = new LinkedHashSet<>();
+            itemWords.add(id.toString());
+            itemWords.add(id.getPath());
+            itemWords.add(name);
+            itemWords.addAll(Arrays.asList(id.getPath().split("_")));
+            itemWords.addAll(Arrays.asList(name.split("\\s+")));
+            for (String word : itemWords) {
+                if (!word.isEmpty()) {
+                    wordEntries.add(new WordEntry(word, i));
+                }
+            }
+        }
+
+        this.trigrams = new HashMap<>(postings.size());
+        postings.forEach((gram, list) -> this.trigrams.put(gram, list.toIntArray()));
+
+        wordEntries.sort((a, b) -> a.word().compareTo(b.word()));
+        this.words = new String[wordEntries.size()];
+        this.wordItems = new int[wordEntries.size()];
+        for (int i = 0; i < wordEntries.size(); i++) {
+            this.words[i] = wordEntries.get(i).word();
+            this.wordItems[i] = wordEntries.get(i).item();
+        }
+    }
+
+    /**
+     * Returns the shared index, building it on first use. Must be called on
+     * the client thread.
+     */
+    public static ItemIndex get() {
+        String language = MinecraftClient.getInstance().getLanguageManager().getLanguage();
+        ItemIndex index = instance;
+        // the item registry is frozen after startup, so a size change means it was rebuilt
+        if (index == null || index.items.size() != Registries.ITEM.size() - 1 || !index.language.equals(language)) {
+            long start = System.nanoTime();
+            List<Item> items = Registries.ITEM.stream().filter(item -> item != Items.AIR).toList();
+            index = new ItemIndex(items, language);
+            instance = index;
+            BlockExporter.LOGGER.info("Indexed {} items for export selection in {} ms",
+                items.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+        return index;
+    }
+
+    /**
+     * Drops cached tag membership, e.g. after a world sent new tag data.
+     */
+    public static void invalidateTags() {
+        ItemIndex index = instance;
+        if (index != null) {
+            index.tags.clear();
+        }
+    }
+
+    public List<Item> getItems() {
+        return this.items;
+    }
+
+    public Collection<String> getNamespaces() {
+        return this.namespaces.keySet();
+    }
+
+    /**
+     * Returns the items matching every part of {@code query}, in registry order.
+     */
+    public List<Item> select(Query query) {
+        if (query.isEmpty()) {
+            return this.items;
+        }
+
+        BitSet selected = new BitSet(this.items.size());
+        selected.set(0, this.items.size());
+
+        if (!query.namespaces().isEmpty()) {
+            BitSet matches = new BitSet();
+            for (String namespace : query.namespaces()) {
+                BitSet members = this.namespaces.get(namespace);
+                if (members != null) {
+                    matches.or(members);
+                }
+            }
+            selected.and(matches);
+        }
+
+        if (!query.tags().isEmpty()) {
+            BitSet matches = new BitSet();
+            for (TagKey<Item> tag : query.tags()) {
+                matches.or(this.tags.computeIfAbsent(tag, this::buildTag));
+            }
+            selected.and(matches);
+        }
+
+        for (String term : query.terms()) {
+            if (selected.isEmpty()) {
+                break;
+            }
+            selected.and(term.length() < GRAM ? matchPrefix(term) : matchSubstring(term));
+        }
+
+        List<Item> result = new ArrayList<>(selected.cardinality());
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            result.add(this.items.get(i));
+        }
+        return result;
+    }
+
+    private BitSet buildTag(TagKey<Item> tag) {
+        BitSet members = new BitSet(this.items.size());
+        for (int i = 0; i < this.items.size(); i++) {
+            if (Registries.ITEM.getEntry(this.items.get(i)).isIn(tag)) {
+                members.set(i);
+            }
+        }
+        return members;
+    }
+
+    // terms too short for a trigram only match the start of an id, name or word
+    private BitSet matchPrefix(String prefix) {
+        BitSet matches = new BitSet(this.items.size());
+        int from = 0;
+        int to = this.words.length;
+        // lower bound, since the same word is listed once per item that has it
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (this.words[middle].compareTo(prefix) < 0) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        for (int i = from; i < this.words.length && this.words[i].startsWith(prefix); i++) {
+            matches.set(this.wordItems[i]);
+        }
+        return matches;
+    }
+
+    private BitSet matchSubstring(String term) {
+        // intersect the shortest posting lists first, then confirm each candidate really contains the term
+        List<int[]> lists = new ArrayList<>();
+        for (int start = 0; start + GRAM <= term.length(); start++) {
+            int[] list = this.trigrams.get(term.substring(start, start + GRAM));
+            if (list == null) {
+                return new BitSet();
+            }
+            lists.add(list);
+        }
+        lists.sort((a, b) -> Integer.compare(a.length, b.length));
+
+        int[] candidates = lists.getFirst();
+        for (int i = 1; i < lists.size() && candidates.length > 0; i++) {
+            candidates = intersect(candidates, lists.get(i));
+        }
+
+        BitSet matches = new BitSet(this.items.size());
+        for (int candidate : candidates) {
+            if (this.searchText[candidate].contains(term)) {
+                matches.set(candidate);
+            }
+        }
+        return matches;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, count);
+    }
+
+    private record WordEntry(String word, int item) {
+    }
+
+    /**
+     * A selection of items: any of {@code namespaces}, in any of {@code tags},
+     * and matching all of {@code terms}. An empty group places no restriction.
+     */
+    public record Query(Set<String> namespaces, List<TagKey<Item>> tags, List<String> terms) {
+        public static final Query ALL = new Query(Set.of(), List.of(), List.of());
+
+        /**
+         * Parses search field input such as {@code @minecraft #minecraft:logs oak},
+         * where {@code @} selects a namespace and {@code #} an item tag.
+         * Anything else is matched against item ids and display names.
+         */
+        public static Query parse(String input) {
+            Set<String> namespaces = new LinkedHashSet<>();
+            List<TagKey<Item>> tags = new ArrayList<>();
+            List<String> terms = new ArrayList<>();
+            for (String token : input.toLowerCase(Locale.ROOT).trim().split("\\s+")) {
+                if (token.startsWith("@")) {
+                    if (token.length() > 1) {
+                        namespaces.add(token.substring(1));
+                    }
+                } else if (token.startsWith("#")) {
+                    if (token.length() == 1) {
+                        continue;
+                    }
+                    Identifier id = Identifier.tryParse(token.substring(1));
+                    if (id != null) {
+                        tags.add(TagKey.of(RegistryKeys.ITEM, id));
+                    } else {
+                        // an unparsable tag is a term nothing contains, so the selection is empty rather than everything
+                        terms.add(token);
+                    }
+                } else if (!token.isEmpty()) {
+                    terms.add(token);
+                }
+            }
+            return new Query(Set.copyOf(namespaces), List.copyOf(tags), List.copyOf(terms));
+        }
+
+        public boolean isEmpty() {
+            return this.namespaces.isEmpty() && this.tags.isEmpty() && this.terms.isEmpty();
+        }
+
+        /**
+         * Formats the query in the syntax {@link #parse(String)} reads back.
+         */
+        public String format() {
+            List<String> tokens = new ArrayList<>();
+            this.namespaces.forEach(namespace -> tokens.add("@" + namespace));
+            this.tags.forEach(tag -> tokens.add("#" + tag.id()));
+            tokens.addAll(this.terms);
+            return String.join(" ", tokens);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.kazuofficial.blockexporter;
 
+import com.google.common.hash.HashCode;
 import com.mojang.blaze3d.buffers.GpuBuffer;
 import com.mojang.blaze3d.systems.CommandEncoder;
 import com.mojang.blaze3d.systems.ProjectionType;
@@ -12,6 +13,7 @@ import net.minecraft.client.gl.SimpleFramebuffer;
 import net.minecraft.client.render.*;
 import net.minecraft.client.render.item.ItemRenderState;
 import net.minecraft.client.texture.NativeImage;
+import net.minecraft.client.texture.SpriteAtlasTexture;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.item.ItemDisplayContext;
 import net.minecraft.item.ItemStack;
@@ -22,148 +24,735 @@ import net.minecraft.util.math.ColorHelper;
 import org.joml.Matrix4f;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 public class ItemRenderer implements AutoCloseable {
+    private static final int MAX_GRID_PIXELS = 2048;
+    private static final int MAX_GRID_COLUMNS = 8;
+    // one captured frame per client tick of texture animation
+    private static final int ANIMATION_FRAME_MILLIS = 50;
+    // meshes don't depend on the render size, so the manifest tracks them under their own key
+    private static final int GEOMETRY_MANIFEST_SIZE = 0;
+
+    private static long clientTicks = 0;
+
     private final int textureSize;
     private final Path exportDirectory;
+    private final List<Integer> outputSizes;
+    private final Map<Integer, ExportSink> sinks;
+    private final MeshCapture meshCapture;
+    private final GltfExportSink geometrySink;
+    private final ExportOutput output;
+    private final ExportManifest manifest;
+    private final ExportJournal journal;
+    private final ExportInputs inputs;
+    private final AtomicInteger skippedExports;
     private final MinecraftClient client;
-    private final SimpleFramebuffer framebuffer;
+    private final ReadbackSlot[] slots;
+    private final CommandEncoder commandEncoder;
     private final RawProjectionMatrix projectionMatrix;
     private final ItemRenderState itemRenderState;
-    private final ExecutorService fileWriteExecutor;
-    private final Semaphore fileWriteSemaphore;
+    private final WritePipeline writePipeline;
+    private final int writeQueueCapacity;
+    private final ImageMemoryBudget memoryBudget;
+    private final ExportStats stats;
     private final ConcurrentLinkedQueue<ItemStack> failedExports;
     
     private final MatrixStack matrices;
     private final Matrix4f orthoMatrix;
     private final VertexConsumerProvider.Immediate immediate;
+    private final int gridColumns;
+    private final int gridSize;
+    private final int gridCells;
+    private final int animationFrames;
+    private final long gridReservation;
+    private final long animationGridReservation;
+    private final List<GridCell> pendingCells;
+    private final Queue<AnimatedItem> waitingAnimations = new ArrayDeque<>();
+    private final List<AnimatedCell> animatedCells = new ArrayList<>();
+    private ReadbackSlot currentSlot;
+    private ReadbackSlot animationSlot;
+    private int animationCellsUsed = 0;
+    private long lastAnimationTick = -1;
+    private DiffuseLighting.Type shaderLights;
+    private boolean finished = false;
+    private CompletableFuture<Void> closed;
+    private int nextSlotIndex = 0;
+
+    public ItemRenderer(ExportConfig config, ExportJournal journal) {
+        this(config, openOutput(config), journal);
+    }
 
-    public ItemRenderer(int textureSize) {
-        this.textureSize = textureSize;
+    /**
+     * Renders into {@code output} instead of the folder or archive the config describes.
+     */
+    public ItemRenderer(ExportConfig config, ExportOutput output, ExportJournal journal) {
+        this.textureSize = config.textureSize();
+        this.journal = journal;
         this.client = MinecraftClient.getInstance();
-        this.exportDirectory = client.runDirectory.toPath().resolve("item_exports");
+        this.exportDirectory = config.exportDirectory();
         this.projectionMatrix = new RawProjectionMatrix("item-exporter");
         this.itemRenderState = new ItemRenderState();
         int coreCount = Runtime.getRuntime().availableProcessors();
-        this.fileWriteExecutor = Executors.newFixedThreadPool(Math.max(2, coreCount / 2));
-        this.fileWriteSemaphore = new Semaphore(coreCount);
+        this.writePipeline = new WritePipeline("item-exporter-writer", Math.max(2, coreCount / 2));
+        this.writeQueueCapacity = coreCount * 2;
         this.failedExports = new ConcurrentLinkedQueue<>();
 
+        this.gridColumns = config.batchedRendering()
+            ? Math.clamp(MAX_GRID_PIXELS / this.textureSize, 1, MAX_GRID_COLUMNS)
+            : 1;
+        this.gridSize = this.gridColumns * this.textureSize;
+        this.memoryBudget = new ImageMemoryBudget(config.imageMemoryBudget());
+        this.gridCells = this.gridColumns * this.gridColumns;
+        this.pendingCells = new ArrayList<>(this.gridCells);
+        this.animationFrames = Math.min(config.animationFrames(), this.gridCells);
+        if (this.animationFrames < config.animationFrames()) {
+            BlockExporter.LOGGER.warn("Only {} animation frames fit into one {}px render grid, capturing {} instead of {}",
+                this.gridCells, this.gridSize, this.animationFrames, config.animationFrames());
+        }
+        this.gridReservation = estimateGridBytes(1, config.outputSizes().size() > 1);
+        this.animationGridReservation = estimateGridBytes(this.animationFrames, config.outputSizes().size() > 1);
+
         this.matrices = new MatrixStack();
-        this.orthoMatrix = new Matrix4f().setOrtho(0.0F, this.textureSize, this.textureSize, 0.0F, -1000.0F, 1000.0F);
+        this.orthoMatrix = new Matrix4f().setOrtho(0.0F, this.gridSize, this.gridSize, 0.0F, -1000.0F, 1000.0F);
         this.immediate = this.client.getBufferBuilders().getEntityVertexConsumers();
 
+        this.outputSizes = config.outputSizes();
+        this.output = output;
+
+        this.stats = new ExportStats();
+        this.sinks = new LinkedHashMap<>();
+        if (config.outputMode() == ExportConfig.OutputMode.GLTF) {
+            this.meshCapture = new MeshCapture();
+            this.geometrySink = new GltfExportSink(this.output, new PngEncoder(config.pngOptions()), this.stats);
+        } else {
+            this.meshCapture = null;
+            this.geometrySink = null;
+            for (int size : this.outputSizes) {
+                this.sinks.put(size, ExportSink.create(config, size, this.output, this.stats, this.memoryBudget));
+            }
+            if (journal != null) {
+                resumeDeduplication(journal);
+            }
+        }
+
+        this.manifest = config.incremental() ? ExportManifest.load(exportDirectory) : null;
+        // input hashes only matter for skipping unchanged items
+        this.inputs = this.manifest != null ? new ExportInputs(this.client, this.textureSize, this.animationFrames) : null;
+        this.skippedExports = new AtomicInteger(0);
+        this.commandEncoder = RenderSystem.getDevice().createCommandEncoder();
+        // geometry exports never rasterize, so they need no framebuffers
+        this.slots = new ReadbackSlot[this.meshCapture != null ? 0 : Math.max(1, config.readbackSlots())];
+        for (int i = 0; i < this.slots.length; i++) {
+            this.slots[i] = new ReadbackSlot("item-exporter-" + i, this.gridSize);
+        }
+    }
+
+    /**
+     * Native memory one grid holds from readback until it is written: the
+     * readback image plus what a writer allocates for the one cell it works
+     * on at a time, i.e. the sliced frames, the mip levels halved from them
+     * while both the larger and smaller level are alive, and the encoded
+     * output, which is at most about the size of the raw pixels.
+     */
+    private long estimateGridBytes(int frames, boolean mipLevels) {
+        long cellBytes = (long) this.textureSize * this.textureSize * PixelTransfer.BYTES_PER_PIXEL * frames;
+        long readback = (long) this.gridSize * this.gridSize * PixelTransfer.BYTES_PER_PIXEL;
+        long sliced = this.gridColumns > 1 ? cellBytes : 0;
+        long mips = mipLevels ? cellBytes / 4 + cellBytes / 16 : 0;
+        return readback + sliced + mips + cellBytes;
+    }
+
+    /**
+     * Counts client ticks, which is also the rate the game advances texture animations at.
+     */
+    static void onClientTick() {
+        clientTicks++;
+    }
+
+    private static ExportOutput openOutput(ExportConfig config) {
+        Path exportDirectory = config.exportDirectory();
         try {
             Files.createDirectories(exportDirectory);
+            if (config.sinkType() == ExportConfig.SinkType.DIRECTORY && config.outputMode() != ExportConfig.OutputMode.GLTF) {
+                for (int size : config.outputSizes()) {
+                    Files.createDirectories(config.directoryForSize(size));
+                }
+            }
             BlockExporter.LOGGER.info("Created export directory: {}", exportDirectory.toAbsolutePath());
+            return config.createOutput();
         } catch (IOException e) {
             BlockExporter.LOGGER.error("Failed to create export directory: {}", exportDirectory.toAbsolutePath(), e);
             throw new RuntimeException("Failed to create export directory", e);
         }
-        
-        this.framebuffer = new SimpleFramebuffer("item-exporter", this.textureSize, this.textureSize, true);
     }
 
-    public void exportItemsBatch(List<ItemStack> stacks, AtomicInteger completionCounter) {
-        if (stacks == null || stacks.isEmpty()) {
-            return;
+    public int exportItemsBatch(List<ItemStack> stacks, AtomicInteger completionCounter) {
+        if ((stacks == null || stacks.isEmpty()) && !hasPendingAnimations()) {
+            return 0;
+        }
+        if (this.meshCapture != null) {
+            for (ItemStack stack : stacks) {
+                if (stack != null && !stack.isEmpty()) {
+                    exportGeometry(stack, completionCounter);
+                }
+            }
+            return stacks.size();
         }
 
         var oldColor = RenderSystem.outputColorTextureOverride;
         var oldDepth = RenderSystem.outputDepthTextureOverride;
+        int consumed = 0;
         
+        // the rest of the frame may have set other lights since the last batch
+        this.shaderLights = null;
+        RenderSystem.backupProjectionMatrix();
         try {
-            RenderSystem.outputColorTextureOverride = this.framebuffer.getColorAttachmentView();
-            RenderSystem.outputDepthTextureOverride = this.framebuffer.getDepthAttachmentView();
             RenderSystem.setProjectionMatrix(this.projectionMatrix.set(orthoMatrix), ProjectionType.ORTHOGRAPHIC);
 
             for (ItemStack stack : stacks) {
+                if (this.currentSlot == null && (this.currentSlot = acquireSlot(this.gridReservation)) == null) {
+                    break;
+                }
+                consumed++;
+
                 if (stack == null || stack.isEmpty()) {
                     continue;
                 }
                 
                 exportSingleItemFast(stack, completionCounter);
+                if (this.pendingCells.size() == this.gridCells) {
+                    flushGrid(completionCounter);
+                }
             }
+            flushGrid(completionCounter);
+            captureAnimationFrames(completionCounter);
 
         } catch (Exception e) {
             BlockExporter.LOGGER.error("Failed to export item batch", e);
+            abandonGrid(completionCounter);
         } finally {
             RenderSystem.outputColorTextureOverride = oldColor;
             RenderSystem.outputDepthTextureOverride = oldDepth;
+            RenderSystem.restoreProjectionMatrix();
+        }
+        return consumed;
+    }
+
+    /**
+     * Keeps capturing animated items once every item has been handed to
+     * {@link #exportItemsBatch}; they take one frame per client tick, so this
+     * has to be called every tick until the export completes.
+     */
+    public void advanceAnimations(AtomicInteger completionCounter) {
+        exportItemsBatch(List.of(), completionCounter);
+    }
+
+    private void abandonGrid(AtomicInteger completionCounter) {
+        for (GridCell cell : this.pendingCells) {
+            if (cell != null) {
+                this.failedExports.add(cell.stack());
+                completionCounter.incrementAndGet();
+            }
+        }
+        this.pendingCells.clear();
+        if (this.currentSlot != null) {
+            this.memoryBudget.release(this.gridReservation);
+            this.currentSlot = null;
+        }
+
+        for (AnimatedCell cell : this.animatedCells) {
+            this.failedExports.add(cell.stack);
+        }
+        for (AnimatedItem item : this.waitingAnimations) {
+            this.failedExports.add(item.stack());
+        }
+        completionCounter.addAndGet(this.animatedCells.size() + this.waitingAnimations.size());
+        this.animatedCells.clear();
+        this.waitingAnimations.clear();
+        this.animationCellsUsed = 0;
+        if (this.animationSlot != null) {
+            this.memoryBudget.release(this.animationGridReservation);
+            this.animationSlot = null;
+        }
+    }
+
+    private ReadbackSlot acquireSlot(long reservedBytes) {
+        // the grid's images are reserved up front so nothing is rendered that can't be held until written
+        if (!this.memoryBudget.tryAcquire(reservedBytes)) {
+            return null;
+        }
+
+        ReadbackSlot slot = findAvailableSlot();
+        if (slot == null) {
+            RenderSystem.executePendingTasks();
+            slot = findAvailableSlot();
+            if (slot == null) {
+                this.memoryBudget.release(reservedBytes);
+                return null;
+            }
+        }
+
+        SimpleFramebuffer framebuffer = slot.framebuffer();
+        this.commandEncoder.clearColorAndDepthTextures(
+            framebuffer.getColorAttachment(), 0x00000000,
+            framebuffer.getDepthAttachment(), 1.0F
+        );
+        return slot;
+    }
+
+    private ReadbackSlot findAvailableSlot() {
+        for (int i = 0; i < this.slots.length; i++) {
+            int index = (this.nextSlotIndex + i) % this.slots.length;
+            if (this.slots[index].isAvailable()) {
+                this.nextSlotIndex = (index + 1) % this.slots.length;
+                return this.slots[index];
+            }
         }
+        return null;
     }
 
     private void exportSingleItemFast(ItemStack stack, AtomicInteger completionCounter) {
         Identifier id = Registries.ITEM.getId(stack.getItem());
+        int cellIndex = this.pendingCells.size();
+        boolean drawn = false;
         
         try {
+            long modelStart = System.nanoTime();
             client.getItemModelManager().clearAndUpdate(this.itemRenderState, stack, ItemDisplayContext.GUI, client.world, null, 0);
-            
-            CommandEncoder commandEncoder = RenderSystem.getDevice().createCommandEncoder();
-            commandEncoder.clearColorAndDepthTextures(
-                this.framebuffer.getColorAttachment(), 0x00000000,
-                this.framebuffer.getDepthAttachment(), 1.0F
-            );
-
-            matrices.push();
-            matrices.translate(this.textureSize / 2.0, this.textureSize / 2.0, 100.0);
-            matrices.scale(this.textureSize, -this.textureSize, this.textureSize);
-
-            if (this.itemRenderState.isSideLit()) {
-                client.gameRenderer.getDiffuseLighting().setShaderLights(DiffuseLighting.Type.ITEMS_3D);
-            } else {
-                client.gameRenderer.getDiffuseLighting().setShaderLights(DiffuseLighting.Type.ITEMS_FLAT);
-            }
-            
-            this.itemRenderState.render(matrices, immediate, 15728880, OverlayTexture.DEFAULT_UV);
-            immediate.draw();
-            matrices.pop();
-            
-            takeScreenshotAsync(this.framebuffer, id, stack, completionCounter);
+            this.stats.record(id, ExportStats.Stage.MODEL, System.nanoTime() - modelStart);
+
+            // hashed from the resolved model, so what it draws decides whether the item changed
+            String inputHash = this.inputs != null ? this.inputs.hash(stack, this.itemRenderState) : null;
+            if (isUnchanged(id, inputHash)) {
+                retainUnchanged(id);
+                this.skippedExports.incrementAndGet();
+                recordDone(id);
+                completionCounter.incrementAndGet();
+                return;
+            }
+
+            // static items are the common case and never pay for extra frames
+            if (this.animationFrames > 1 && this.itemRenderState.isAnimated()) {
+                this.waitingAnimations.add(new AnimatedItem(id, stack, inputHash));
+                return;
+            }
+
+            drawn = true;
+            drawCell(this.currentSlot, id, cellIndex);
+            this.pendingCells.add(new GridCell(cellIndex, id, stack, inputHash, 1));
 
         } catch (Exception e) {
             BlockExporter.LOGGER.error("Failed to export item: {}", id, e);
             this.failedExports.add(stack);
             completionCounter.incrementAndGet();
+            // keep a cell that was drawn into reserved so the next item doesn't land on leftovers
+            if (drawn && this.pendingCells.size() == cellIndex) {
+                this.pendingCells.add(null);
+            }
         }
     }
 
-    private void takeScreenshotAsync(Framebuffer framebuffer, Identifier itemId, ItemStack itemStack, AtomicInteger completionCounter) {
-        takeScreenshot(framebuffer, (image) -> {
-            CompletableFuture.runAsync(() -> {
-                try {
-                    this.fileWriteSemaphore.acquire();
-                    Path filePath = exportDirectory.resolve(itemId.getNamespace() + "_" + itemId.getPath() + ".png");
-                    image.writeTo(filePath);
-                    BlockExporter.LOGGER.debug("Async exported: {}", filePath.getFileName());
-                } catch (IOException e) {
-                    BlockExporter.LOGGER.error("Failed to save exported item image: {}", itemId, e);
-                    this.failedExports.add(itemStack);
-                } catch (InterruptedException e) {
-                    BlockExporter.LOGGER.error("Screenshot thread interrupted for item: {}", itemId, e);
-                    this.failedExports.add(itemStack);
-                    Thread.currentThread().interrupt();
-                } finally {
-                    if (image != null) {
-                        image.close();
+    private boolean hasPendingAnimations() {
+        return !this.animatedCells.isEmpty() || !this.waitingAnimations.isEmpty();
+    }
+
+    /**
+     * Draws the next frame of every animated item in the animation grid. The
+     * game keeps ticking sprite animations at their normal pace while the
+     * export runs, so each client tick is one frame, and nothing the player
+     * sees is sped up. Items that arrive while the grid is full wait for the
+     * next one.
+     */
+    private void captureAnimationFrames(AtomicInteger completionCounter) {
+        if (!hasPendingAnimations() || this.lastAnimationTick == clientTicks) {
+            return;
+        }
+        this.lastAnimationTick = clientTicks;
+
+        if (this.animationSlot == null) {
+            if (this.waitingAnimations.isEmpty() || (this.animationSlot = acquireSlot(this.animationGridReservation)) == null) {
+                return;
+            }
+            this.animationCellsUsed = 0;
+        }
+        while (!this.waitingAnimations.isEmpty() && this.animationCellsUsed + this.animationFrames <= this.gridCells) {
+            AnimatedItem item = this.waitingAnimations.poll();
+            this.animatedCells.add(new AnimatedCell(this.animationCellsUsed, item));
+            this.animationCellsUsed += this.animationFrames;
+        }
+
+        boolean complete = true;
+        for (Iterator<AnimatedCell> iterator = this.animatedCells.iterator(); iterator.hasNext(); ) {
+            AnimatedCell cell = iterator.next();
+            if (cell.framesDrawn == this.animationFrames) {
+                continue;
+            }
+            try {
+                // time dependent models are re-resolved for every frame as well
+                long modelStart = System.nanoTime();
+                client.getItemModelManager().clearAndUpdate(this.itemRenderState, cell.stack, ItemDisplayContext.GUI, client.world, null, 0);
+                this.stats.record(cell.itemId, ExportStats.Stage.MODEL, System.nanoTime() - modelStart);
+                drawCell(this.animationSlot, cell.itemId, cell.index + cell.framesDrawn);
+                cell.framesDrawn++;
+                complete &= cell.framesDrawn == this.animationFrames;
+            } catch (Exception e) {
+                BlockExporter.LOGGER.error("Failed to export item: {}", cell.itemId, e);
+                this.failedExports.add(cell.stack);
+                completionCounter.incrementAndGet();
+                iterator.remove();
+            }
+        }
+
+        // a grid that could still take more items is written anyway once nothing is waiting for it
+        if (complete) {
+            ReadbackSlot slot = this.animationSlot;
+            this.animationSlot = null;
+            List<GridCell> cells = this.animatedCells.stream()
+                .map(cell -> new GridCell(cell.index, cell.itemId, cell.stack, cell.inputHash, this.animationFrames))
+                .toList();
+            this.animatedCells.clear();
+            flushGrid(slot, cells, this.animationGridReservation, completionCounter);
+        }
+    }
+
+    private void exportGeometry(ItemStack stack, AtomicInteger completionCounter) {
+        Identifier id = Registries.ITEM.getId(stack.getItem());
+        try {
+            long modelStart = System.nanoTime();
+            client.getItemModelManager().clearAndUpdate(this.itemRenderState, stack, ItemDisplayContext.GUI, client.world, null, 0);
+            this.stats.record(id, ExportStats.Stage.MODEL, System.nanoTime() - modelStart);
+
+            String inputHash = this.inputs != null ? this.inputs.hash(stack, this.itemRenderState) : null;
+            if (this.manifest != null && this.manifest.isInputUnchanged(id, GEOMETRY_MANIFEST_SIZE, inputHash) && this.geometrySink.hasOutput(id)) {
+                this.skippedExports.incrementAndGet();
+                recordDone(id);
+                completionCounter.incrementAndGet();
+                return;
+            }
+
+            long drawStart = System.nanoTime();
+
+            // the GUI transform stays applied so meshes face the viewer like the rendered icons do
+            this.itemRenderState.render(new MatrixStack(), this.meshCapture, 15728880, OverlayTexture.DEFAULT_UV);
+            boolean dropped = this.meshCapture.hasDroppedLayers();
+            CapturedMesh mesh = this.meshCapture.finish();
+            this.stats.record(id, ExportStats.Stage.DRAW, System.nanoTime() - drawStart);
+
+            if (mesh.isEmpty()) {
+                // special model renderers draw with their own textures, which the mesh has no material for
+                BlockExporter.LOGGER.info("{} has no geometry on the block atlas (special model renderer), skipping mesh export", id);
+                this.stats.recordUnsupported(id, "special model renderer");
+                if (this.manifest != null) {
+                    this.manifest.forget(id, GEOMETRY_MANIFEST_SIZE);
+                }
+                recordDone(id);
+                completionCounter.incrementAndGet();
+                return;
+            }
+            if (dropped) {
+                BlockExporter.LOGGER.debug("{} drew layers that are not on the block atlas, they are left out of its mesh", id);
+            }
+
+            this.writePipeline.submit(new WritePipeline.Job() {
+                @Override
+                public void run() {
+                    try {
+                        HashCode outputHash = geometrySink.write(id, mesh);
+                        if (manifest != null) {
+                            recordManifest(geometrySink.hasOutput(id), id, GEOMETRY_MANIFEST_SIZE, inputHash, outputHash.toString());
+                        }
+                        recordDone(id);
+                    } catch (IOException | RuntimeException e) {
+                        BlockExporter.LOGGER.error("Failed to save exported item mesh: {}", id, e);
+                        failedExports.add(stack);
+                    } finally {
+                        completionCounter.incrementAndGet();
                     }
-                    this.fileWriteSemaphore.release();
+                }
+
+                @Override
+                public void discard() {
                     completionCounter.incrementAndGet();
                 }
-            }, fileWriteExecutor);
+            });
+            this.stats.recordQueueDepth(this.writePipeline.getPending());
+        } catch (Exception e) {
+            BlockExporter.LOGGER.error("Failed to export item mesh: {}", id, e);
+            this.failedExports.add(stack);
+            completionCounter.incrementAndGet();
+        }
+    }
+
+    private void drawCell(ReadbackSlot slot, Identifier id, int cellIndex) {
+        SimpleFramebuffer framebuffer = slot.framebuffer();
+        RenderSystem.outputColorTextureOverride = framebuffer.getColorAttachmentView();
+        RenderSystem.outputDepthTextureOverride = framebuffer.getDepthAttachmentView();
+        int cellX = (cellIndex % this.gridColumns) * this.textureSize;
+        int cellY = (cellIndex / this.gridColumns) * this.textureSize;
+        long drawStart = System.nanoTime();
+
+        matrices.push();
+        matrices.translate(cellX + this.textureSize / 2.0, cellY + this.textureSize / 2.0, 100.0);
+        matrices.scale(this.textureSize, -this.textureSize, this.textureSize);
+
+        // items arrive grouped by lighting (see RenderOrder), so this rarely changes between cells
+        DiffuseLighting.Type lights = this.itemRenderState.isSideLit() ? DiffuseLighting.Type.ITEMS_3D : DiffuseLighting.Type.ITEMS_FLAT;
+        if (lights != this.shaderLights) {
+            client.gameRenderer.getDiffuseLighting().setShaderLights(lights);
+            this.shaderLights = lights;
+        }
+
+        if (this.gridColumns > 1) {
+            RenderSystem.enableScissorForRenderTypeDraws(cellX, this.gridSize - cellY - this.textureSize, this.textureSize, this.textureSize);
+        }
+        try {
+            this.itemRenderState.render(matrices, immediate, 15728880, OverlayTexture.DEFAULT_UV);
+            immediate.draw();
+            this.stats.record(id, ExportStats.Stage.DRAW, System.nanoTime() - drawStart);
+        } finally {
+            matrices.pop();
+            if (this.gridColumns > 1) {
+                RenderSystem.disableScissorForRenderTypeDraws();
+            }
+        }
+    }
+
+    private void flushGrid(AtomicInteger completionCounter) {
+        ReadbackSlot slot = this.currentSlot;
+        this.currentSlot = null;
+        if (slot == null) {
+            return;
+        }
+
+        List<GridCell> cells = new ArrayList<>(this.pendingCells);
+        this.pendingCells.clear();
+        flushGrid(slot, cells, this.gridReservation, completionCounter);
+    }
+
+    private void flushGrid(ReadbackSlot slot, List<GridCell> cells, long reservedBytes, AtomicInteger completionCounter) {
+        if (cells.stream().allMatch(Objects::isNull)) {
+            this.memoryBudget.release(reservedBytes);
+            return;
+        }
+
+        slot.readback(this.commandEncoder, this.stats, (image) -> {
+            if (image == null) {
+                this.memoryBudget.release(reservedBytes);
+                cells.stream().filter(Objects::nonNull).forEach(cell -> this.failedExports.add(cell.stack()));
+                completionCounter.addAndGet((int) cells.stream().filter(Objects::nonNull).count());
+                return;
+            }
+
+            this.writePipeline.submit(new WritePipeline.Job() {
+                @Override
+                public void run() {
+                    try {
+                        writeGrid(image, cells);
+                    } finally {
+                        releaseGrid(image, cells, reservedBytes, completionCounter);
+                    }
+                }
+
+                @Override
+                public void discard() {
+                    releaseGrid(image, cells, reservedBytes, completionCounter);
+                }
+            });
+            this.stats.recordQueueDepth(this.writePipeline.getPending());
+        });
+    }
+
+    private void releaseGrid(NativeImage image, List<GridCell> cells, long reservedBytes, AtomicInteger completionCounter) {
+        image.close();
+        this.memoryBudget.release(reservedBytes);
+        completionCounter.addAndGet((int) cells.stream().filter(Objects::nonNull).count());
+    }
+
+    private void writeGrid(NativeImage gridImage, List<GridCell> cells) {
+        for (GridCell cell : cells) {
+            if (cell == null) {
+                continue;
+            }
+            if (this.writePipeline.isCancelled()) {
+                return;
+            }
+
+            List<NativeImage> frames = new ArrayList<>(cell.frames());
+            try {
+                if (this.gridColumns == 1) {
+                    writeImage(cell.itemId(), List.of(gridImage), cell.inputHash());
+                } else {
+                    long start = System.nanoTime();
+                    for (int frame = 0; frame < cell.frames(); frame++) {
+                        int index = cell.index() + frame;
+                        NativeImage frameImage = new NativeImage(this.textureSize, this.textureSize, false);
+                        frames.add(frameImage);
+                        PixelTransfer.copyRect(ImagePixels.view(gridImage), this.gridSize,
+                            (index % this.gridColumns) * this.textureSize, (index / this.gridColumns) * this.textureSize,
+                            ImagePixels.view(frameImage), this.textureSize, 0, 0, this.textureSize, this.textureSize);
+                    }
+                    this.stats.record(cell.itemId(), ExportStats.Stage.SLICE, System.nanoTime() - start);
+                    writeImage(cell.itemId(), frames, cell.inputHash());
+                }
+                recordWritten(cell.itemId());
+            } catch (IOException | RuntimeException e) {
+                BlockExporter.LOGGER.error("Failed to save exported item image: {}", cell.itemId(), e);
+                this.failedExports.add(cell.stack());
+            } finally {
+                frames.forEach(NativeImage::close);
+            }
+        }
+    }
+
+    private void recordWritten(Identifier itemId) {
+        // duplicates only get their file when the export finishes, but the journal remembers which item they follow
+        if (this.journal != null && this.sinks.values().stream()
+            .allMatch(sink -> sink.hasOutput(itemId) || sink.getStoredImage(itemId) != null)) {
+            this.journal.record(itemId, storedImages(itemId));
+        }
+    }
+
+    private void recordDone(Identifier itemId) {
+        if (this.journal != null) {
+            this.journal.record(itemId, storedImages(itemId));
+        }
+    }
+
+    private Map<Integer, ExportSink.StoredImage> storedImages(Identifier itemId) {
+        Map<Integer, ExportSink.StoredImage> images = new LinkedHashMap<>();
+        this.sinks.forEach((size, sink) -> {
+            ExportSink.StoredImage image = sink.getStoredImage(itemId);
+            if (image != null) {
+                images.put(size, image);
+            }
+        });
+        return images;
+    }
+
+    /**
+     * Items a resumed export doesn't render again still have to take part in
+     * deduplication, or the remaining items would stop aliasing them and
+     * their own aliases would be missing from the alias map.
+     */
+    private void resumeDeduplication(ExportJournal journal) {
+        journal.getResumedImages().forEach((size, images) -> {
+            ExportSink sink = this.sinks.get(size);
+            if (sink == null) {
+                return;
+            }
+            images.forEach((itemId, image) -> {
+                if (image.aliasOf() == null) {
+                    sink.retain(itemId, image.pixelHash());
+                } else {
+                    sink.retainAlias(itemId, image.aliasOf(), image.pixelHash());
+                }
+            });
         });
     }
 
+    private boolean isUnchanged(Identifier itemId, String inputHash) {
+        if (this.manifest == null) {
+            return false;
+        }
+        for (Map.Entry<Integer, ExportSink> entry : this.sinks.entrySet()) {
+            if (!this.manifest.isInputUnchanged(itemId, entry.getKey(), inputHash) || !entry.getValue().hasOutput(itemId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void retainUnchanged(Identifier itemId) {
+        for (Map.Entry<Integer, ExportSink> entry : this.sinks.entrySet()) {
+            entry.getValue().retain(itemId, HashCode.fromString(this.manifest.getOutputHash(itemId, entry.getKey())));
+        }
+    }
+
+    private void writeImage(Identifier itemId, List<NativeImage> frames, String inputHash) throws IOException {
+        if (!writeSize(itemId, this.textureSize, frames, inputHash)) {
+            this.skippedExports.incrementAndGet();
+        }
+        if (this.outputSizes.size() == 1) {
+            return;
+        }
+
+        int smallestSize = this.outputSizes.getLast();
+        List<NativeImage> level = frames;
+        try {
+            for (int size = this.textureSize / 2; size >= smallestSize; size /= 2) {
+                List<NativeImage> next = level.stream().map(MipPyramid::halve).toList();
+                if (level != frames) {
+                    level.forEach(NativeImage::close);
+                }
+                level = next;
+                if (this.sinks.containsKey(size)) {
+                    writeSize(itemId, size, level, inputHash);
+                }
+            }
+        } finally {
+            if (level != frames) {
+                level.forEach(NativeImage::close);
+            }
+        }
+    }
+
+    private boolean writeSize(Identifier itemId, int size, List<NativeImage> frames, String inputHash) throws IOException {
+        ExportSink sink = this.sinks.get(size);
+        if (this.manifest == null) {
+            writeFrames(sink, itemId, frames);
+            return true;
+        }
+
+        HashCode pixelHash = ImagePixels.hash(frames);
+        String outputHash = pixelHash.toString();
+        boolean unchanged = this.manifest.isOutputUnchanged(itemId, size, outputHash) && sink.hasOutput(itemId);
+        if (unchanged) {
+            sink.retain(itemId, pixelHash);
+        } else {
+            writeFrames(sink, itemId, frames);
+        }
+        recordManifest(sink.hasOutput(itemId), itemId, size, inputHash, outputHash);
+        return !unchanged;
+    }
+
+    /**
+     * Only an output the next run can check for backs a manifest entry. Archive
+     * entries, atlas cells and deduplicated aliases have no file of their own,
+     * and an entry left for them would let a later folder export skip an item
+     * whose loose file is a leftover from before.
+     */
+    private void recordManifest(boolean hasOutput, Identifier itemId, int size, String inputHash, String outputHash) {
+        if (hasOutput) {
+            this.manifest.record(itemId, size, inputHash, outputHash);
+        } else {
+            this.manifest.forget(itemId, size);
+        }
+    }
+
+    private static void writeFrames(ExportSink sink, Identifier itemId, List<NativeImage> frames) throws IOException {
+        if (frames.size() == 1) {
+            sink.write(itemId, frames.getFirst());
+        } else {
+            sink.writeAnimation(itemId, frames, ANIMATION_FRAME_MILLIS);
+        }
+    }
+
 	public static void takeScreenshot(Framebuffer framebuffer, Consumer<NativeImage> callback) {
 		takeScreenshot(framebuffer, 1, callback);
 	}
@@ -179,38 +768,7 @@ public class ItemRenderer implements AutoCloseable {
 			CommandEncoder commandEncoder = RenderSystem.getDevice().createCommandEncoder();
 			RenderSystem.getDevice().createCommandEncoder().copyTextureToBuffer(gpuTexture, gpuBuffer, 0, () -> {
 				try (GpuBuffer.MappedView mappedView = commandEncoder.mapBuffer(gpuBuffer, true, false)) {
-					int l = j / downscaleFactor;
-					int m = i / downscaleFactor;
-					NativeImage nativeImage = new NativeImage(m, l, false);
-
-					for (int n = 0; n < l; n++) {
-						for (int o = 0; o < m; o++) {
-							if (downscaleFactor == 1) {
-								int p = mappedView.data().getInt((o + n * i) * gpuTexture.getFormat().pixelSize());
-								nativeImage.setColor(o, j - n - 1, p);
-							} else {
-								int p = 0;
-								int q = 0;
-								int r = 0;
-								int a = 0;
-
-								for (int s = 0; s < downscaleFactor; s++) {
-									for (int t = 0; t < downscaleFactor; t++) {
-										int u = mappedView.data().getInt((o * downscaleFactor + s + (n * downscaleFactor + t) * i) * gpuTexture.getFormat().pixelSize());
-										p += ColorHelper.getRed(u);
-										q += ColorHelper.getGreen(u);
-										r += ColorHelper.getBlue(u);
-										a += ColorHelper.getAlpha(u);
-									}
-								}
-
-								int s = downscaleFactor * downscaleFactor;
-								nativeImage.setColor(o, l - n - 1, ColorHelper.getArgb(a / s, p / s, q / s, r / s));
-							}
-						}
-					}
-
-					callback.accept(nativeImage);
+					callback.accept(readPixels(mappedView.data(), i, j, gpuTexture.getFormat().pixelSize(), downscaleFactor));
 				}
 
 				gpuBuffer.close();
@@ -220,14 +778,233 @@ public class ItemRenderer implements AutoCloseable {
 		}
 	}
 
+	static NativeImage readPixels(ByteBuffer data, int i, int j, int pixelSize, int downscaleFactor) {
+		int l = j / downscaleFactor;
+		int m = i / downscaleFactor;
+		NativeImage nativeImage = new NativeImage(m, l, false);
+
+		if (pixelSize == PixelTransfer.BYTES_PER_PIXEL) {
+			if (downscaleFactor == 1) {
+				PixelTransfer.copyFlipped(data, i, j, ImagePixels.view(nativeImage));
+			} else {
+				PixelTransfer.downscaleFlipped(data, i, j, downscaleFactor, ImagePixels.view(nativeImage));
+			}
+			return nativeImage;
+		}
+
+		for (int n = 0; n < l; n++) {
+			for (int o = 0; o < m; o++) {
+				if (downscaleFactor == 1) {
+					int p = data.getInt((o + n * i) * pixelSize);
+					nativeImage.setColor(o, j - n - 1, p);
+				} else {
+					int p = 0;
+					int q = 0;
+					int r = 0;
+					int a = 0;
+
+					for (int s = 0; s < downscaleFactor; s++) {
+						for (int t = 0; t < downscaleFactor; t++) {
+							int u = data.getInt((o * downscaleFactor + s + (n * downscaleFactor + t) * i) * pixelSize);
+							p += ColorHelper.getRed(u);
+							q += ColorHelper.getGreen(u);
+							r += ColorHelper.getBlue(u);
+							a += ColorHelper.getAlpha(u);
+						}
+					}
+
+					int s = downscaleFactor * downscaleFactor;
+					nativeImage.setColor(o, l - n - 1, ColorHelper.getArgb(a / s, p / s, q / s, r / s));
+				}
+			}
+		}
+
+		return nativeImage;
+	}
+
+    public CompletableFuture<Void> finish() {
+        this.finished = true;
+        CompletableFuture<Void> atlas = this.geometrySink != null ? exportAtlas() : CompletableFuture.completedFuture(null);
+        return atlas.handle((ignored, atlasError) -> atlasError).thenCompose(atlasError -> this.writePipeline.submit(() -> {
+            try {
+                for (ExportSink sink : this.sinks.values()) {
+                    sink.finish();
+                }
+                this.output.close();
+                if (this.manifest != null) {
+                    this.manifest.save();
+                }
+                if (this.journal != null && atlasError == null) {
+                    this.journal.complete();
+                }
+                writeReport();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to finish export", e);
+            }
+            // the rest of the export is still closed out properly, but the meshes have nothing to sample
+            if (atlasError != null) {
+                throw new IllegalStateException("Failed to export the block atlas", atlasError);
+            }
+        }));
+    }
+
+    private CompletableFuture<Void> exportAtlas() {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        GpuTexture texture = this.client.getTextureManager().getTexture(SpriteAtlasTexture.BLOCK_ATLAS_TEXTURE).getGlTexture();
+        int width = texture.getWidth(0);
+        int height = texture.getHeight(0);
+        if (texture.getFormat().pixelSize() != PixelTransfer.BYTES_PER_PIXEL) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Unsupported block atlas format " + texture.getFormat()));
+        }
+
+        GpuBuffer buffer = RenderSystem.getDevice().createBuffer(() -> "item-exporter atlas readback",
+            GpuBuffer.USAGE_MAP_READ | GpuBuffer.USAGE_COPY_DST, width * height * PixelTransfer.BYTES_PER_PIXEL);
+        this.commandEncoder.copyTextureToBuffer(texture, buffer, 0, () -> {
+            NativeImage atlas = new NativeImage(width, height, false);
+            try (GpuBuffer.MappedView mappedView = this.commandEncoder.mapBuffer(buffer, true, false)) {
+                // textures are stored top row first, unlike framebuffers, so no flip here
+                PixelTransfer.copyRect(mappedView.data(), width, 0, 0, ImagePixels.view(atlas), width, 0, 0, width, height);
+            } catch (RuntimeException e) {
+                atlas.close();
+                written.completeExceptionally(e);
+                return;
+            } finally {
+                buffer.close();
+            }
+
+            this.writePipeline.submit(new WritePipeline.Job() {
+                @Override
+                public void run() throws IOException {
+                    try {
+                        geometrySink.writeAtlas(atlas);
+                    } finally {
+                        atlas.close();
+                    }
+                }
+
+                @Override
+                public void discard() {
+                    atlas.close();
+                }
+            }).whenComplete((ignored, error) -> {
+                if (error != null) {
+                    written.completeExceptionally(error);
+                } else {
+                    written.complete(null);
+                }
+            });
+        }, 0);
+        return written;
+    }
+
+    private void writeReport() {
+        try {
+            this.stats.writeReport(this.exportDirectory);
+        } catch (IOException e) {
+            BlockExporter.LOGGER.warn("Failed to write export timing report", e);
+        }
+    }
+
+    /**
+     * False until the resource fingerprint for incremental exports is read,
+     * which happens off the render thread; nothing is rendered before that.
+     */
+    public boolean isReady() {
+        return this.inputs == null || this.inputs.isReady();
+    }
+
+    public int getPendingWrites() {
+        return this.writePipeline.getPending();
+    }
+
+    public int getWriteQueueCapacity() {
+        return this.writeQueueCapacity;
+    }
+
+    public ImageMemoryBudget getMemoryBudget() {
+        return this.memoryBudget;
+    }
+
+    public ExportStats getStats() {
+        return this.stats;
+    }
+
+    public int getSkippedCount() {
+        return this.skippedExports.get();
+    }
+
+    public int getUnsupportedCount() {
+        return this.stats.getUnsupportedCount();
+    }
+
     public List<ItemStack> getFailedExports() {
         return List.copyOf(this.failedExports);
     }
 
+    private record GridCell(int index, Identifier itemId, ItemStack stack, String inputHash, int frames) {
+    }
+
+    private record AnimatedItem(Identifier itemId, ItemStack stack, String inputHash) {
+    }
+
+    private static final class AnimatedCell {
+        private final int index;
+        private final Identifier itemId;
+        private final ItemStack stack;
+        private final String inputHash;
+        private int framesDrawn = 0;
+
+        AnimatedCell(int index, AnimatedItem item) {
+            this.index = index;
+            this.itemId = item.itemId();
+            this.stack = item.stack();
+            this.inputHash = item.inputHash();
+        }
+    }
+
+    /**
+     * Cancels an unfinished export and frees the GPU resources right away,
+     * then stops the writers and closes the output on a background thread,
+     * since a write stuck in I/O may take a while to give up. The returned
+     * future completes once no writer touches the output anymore.
+     */
+    public CompletableFuture<Void> closeAsync() {
+        if (this.closed != null) {
+            return this.closed;
+        }
+        if (!this.finished) {
+            this.writePipeline.cancel();
+        }
+        this.projectionMatrix.close();
+        for (ReadbackSlot slot : this.slots) {
+            slot.close();
+        }
+        boolean aborted = !this.finished;
+        this.closed = CompletableFuture.runAsync(() -> closeOutput(aborted),
+            task -> Thread.ofVirtual().name("item-exporter-close").start(task));
+        return this.closed;
+    }
+
+    private void closeOutput(boolean aborted) {
+        this.writePipeline.close();
+        if (aborted) {
+            this.sinks.values().forEach(ExportSink::abort);
+            this.output.abort();
+        }
+        if (this.journal != null) {
+            try {
+                this.journal.close();
+            } catch (IOException e) {
+                BlockExporter.LOGGER.warn("Failed to close export journal", e);
+            }
+        }
+    }
+
+    /**
+     * Blocks until no writer touches the output, so a new export never races the old one.
+     */
     @Override
     public void close() {
-        this.fileWriteExecutor.shutdown();
-        this.projectionMatrix.close();
-        this.framebuffer.delete();
+        closeAsync().join();
     }
 }
\ No newline at end of file
@@ -0,0 +1,194 @@
+package com.github.kazuofficial.blockexporter;
+
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.TexturedRenderLayers;
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.client.render.VertexFormat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records the quads an item renders instead of drawing them. Only layers that
+ * sample the block atlas are kept, since that is the one texture exported
+ * next to the meshes; glints and special model renderers with their own
+ * entity textures are dropped.
+ */
+public class MeshCapture implements VertexConsumerProvider {
+    private final Map<RenderLayer, CapturedMesh.AlphaMode> atlasLayers = new LinkedHashMap<>();
+    private final Map<RenderLayer, LayerCapture> captures = new LinkedHashMap<>();
+    private final Set<RenderLayer> droppedLayers = new HashSet<>();
+
+    public MeshCapture() {
+        this.atlasLayers.put(TexturedRenderLayers.getEntitySolid(), CapturedMesh.AlphaMode.OPAQUE);
+        this.atlasLayers.put(TexturedRenderLayers.getEntityCutout(), CapturedMesh.AlphaMode.MASK);
+        this.atlasLayers.put(TexturedRenderLayers.getItemEntityTranslucentCull(), CapturedMesh.AlphaMode.BLEND);
+        this.atlasLayers.put(TexturedRenderLayers.getEntityTranslucentCull(), CapturedMesh.AlphaMode.BLEND);
+    }
+
+    @Override
+    public VertexConsumer getBuffer(RenderLayer layer) {
+        CapturedMesh.AlphaMode alphaMode = this.atlasLayers.get(layer);
+        if (alphaMode == null || layer.getDrawMode() != VertexFormat.DrawMode.QUADS) {
+            this.droppedLayers.add(layer);
+            return DiscardingConsumer.INSTANCE;
+        }
+        return this.captures.computeIfAbsent(layer, key -> new LayerCapture(alphaMode));
+    }
+
+    /**
+     * Returns everything captured since the last call and starts a new mesh.
+     */
+    public CapturedMesh finish() {
+        List<CapturedMesh.Primitive> primitives = new ArrayList<>();
+        for (LayerCapture capture : this.captures.values()) {
+            CapturedMesh.Primitive primitive = capture.toPrimitive();
+            if (primitive != null) {
+                primitives.add(primitive);
+            }
+        }
+        this.captures.clear();
+        this.droppedLayers.clear();
+        return new CapturedMesh(List.copyOf(primitives));
+    }
+
+    public boolean hasDroppedLayers() {
+        return !this.droppedLayers.isEmpty();
+    }
+
+    private static final class LayerCapture implements VertexConsumer {
+        private final CapturedMesh.AlphaMode alphaMode;
+        private final FloatArrayList positions = new FloatArrayList();
+        private final FloatArrayList normals = new FloatArrayList();
+        private final FloatArrayList uvs = new FloatArrayList();
+        private final FloatArrayList colors = new FloatArrayList();
+        private int vertexCount = 0;
+
+        LayerCapture(CapturedMesh.AlphaMode alphaMode) {
+            this.alphaMode = alphaMode;
+        }
+
+        @Override
+        public VertexConsumer vertex(float x, float y, float z) {
+            // every attribute gets a default so a vertex that leaves one out still lines up
+            this.positions.add(x);
+            this.positions.add(y);
+            this.positions.add(z);
+            this.normals.add(0.0F);
+            this.normals.add(1.0F);
+            this.normals.add(0.0F);
+            this.uvs.add(0.0F);
+            this.uvs.add(0.0F);
+            this.colors.add(1.0F);
+            this.colors.add(1.0F);
+            this.colors.add(1.0F);
+            this.colors.add(1.0F);
+            this.vertexCount++;
+            return this;
+        }
+
+        @Override
+        public VertexConsumer color(int red, int green, int blue, int alpha) {
+            int offset = (this.vertexCount - 1) * 4;
+            this.colors.set(offset, red / 255.0F);
+            this.colors.set(offset + 1, green / 255.0F);
+            this.colors.set(offset + 2, blue / 255.0F);
+            this.colors.set(offset + 3, alpha / 255.0F);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer texture(float u, float v) {
+            int offset = (this.vertexCount - 1) * 2;
+            this.uvs.set(offset, u);
+            this.uvs.set(offset + 1, v);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer overlay(int u, int v) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer light(int u, int v) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer normal(float x, float y, float z) {
+            float length = (float) Math.sqrt(x * x + y * y + z * z);
+            if (length > 0.0F) {
+                int offset = (this.vertexCount - 1) * 3;
+                this.normals.set(offset, x / length);
+                this.normals.set(offset + 1, y / length);
+                this.normals.set(offset + 2, z / length);
+            }
+            return this;
+        }
+
+        CapturedMesh.Primitive toPrimitive() {
+            int quads = this.vertexCount / 4;
+            if (quads == 0) {
+                return null;
+            }
+
+            int vertices = quads * 4;
+            int[] indices = new int[quads * 6];
+            for (int quad = 0; quad < quads; quad++) {
+                int first = quad * 4;
+                int offset = quad * 6;
+                indices[offset] = first;
+                indices[offset + 1] = first + 1;
+                indices[offset + 2] = first + 2;
+                indices[offset + 3] = first;
+                indices[offset + 4] = first + 2;
+                indices[offset + 5] = first + 3;
+            }
+            return new CapturedMesh.Primitive(this.alphaMode, vertices,
+                this.positions.toFloatArray(), this.normals.toFloatArray(),
+                this.uvs.toFloatArray(), this.colors.toFloatArray(), indices);
+        }
+    }
+
+    static final class DiscardingConsumer implements VertexConsumer {
+        static final DiscardingConsumer INSTANCE = new DiscardingConsumer();
+
+        @Override
+        public VertexConsumer vertex(float x, float y, float z) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer color(int red, int green, int blue, int alpha) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer texture(float u, float v) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer overlay(int u, int v) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer light(int u, int v) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer normal(float x, float y, float z) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.kazuofficial.blockexporter;
+
+import net.minecraft.client.texture.NativeImage;
+
+import java.nio.ByteBuffer;
+
+public final class MipPyramid {
+    private MipPyramid() {
+    }
+
+    public static NativeImage halve(NativeImage source) {
+        int width = source.getWidth() / 2;
+        int height = source.getHeight() / 2;
+        NativeImage result = new NativeImage(width, height, false);
+        halve(ImagePixels.view(source), source.getWidth(), source.getHeight(), ImagePixels.view(result));
+        return result;
+    }
+
+    public static void halve(ByteBuffer src, int srcWidth, int srcHeight, ByteBuffer dst) {
+        if (srcWidth % 2 != 0 || srcHeight % 2 != 0) {
+            throw new IllegalArgumentException("Mip level source must have even dimensions: " + srcWidth + "x" + srcHeight);
+        }
+
+        int srcRow = srcWidth * PixelTransfer.BYTES_PER_PIXEL;
+        int dstWidth = srcWidth / 2;
+        int dstHeight = srcHeight / 2;
+        byte[] top = new byte[srcRow];
+        byte[] bottom = new byte[srcRow];
+        byte[] out = new byte[dstWidth * PixelTransfer.BYTES_PER_PIXEL];
+
+        for (int y = 0; y < dstHeight; y++) {
+            src.get(y * 2 * srcRow, top);
+            src.get((y * 2 + 1) * srcRow, bottom);
+
+            for (int x = 0; x < dstWidth; x++) {
+                int i = x * 2 * PixelTransfer.BYTES_PER_PIXEL;
+                int j = i + PixelTransfer.BYTES_PER_PIXEL;
+                int a0 = top[i + 3] & 0xFF;
+                int a1 = top[j + 3] & 0xFF;
+                int a2 = bottom[i + 3] & 0xFF;
+                int a3 = bottom[j + 3] & 0xFF;
+                int alphaSum = a0 + a1 + a2 + a3;
+                int o = x * PixelTransfer.BYTES_PER_PIXEL;
+
+                if (alphaSum == 0) {
+                    out[o] = 0;
+                    out[o + 1] = 0;
+                    out[o + 2] = 0;
+                    out[o + 3] = 0;
+                    continue;
+                }
+
+                for (int c = 0; c < 3; c++) {
+                    int weighted = (top[i + c] & 0xFF) * a0 + (top[j + c] & 0xFF) * a1
+                        + (bottom[i + c] & 0xFF) * a2 + (bottom[j + c] & 0xFF) * a3;
+                    out[o + c] = (byte) ((weighted + alphaSum / 2) / alphaSum);
+                }
+                out[o + 3] = (byte) ((alphaSum + 2) / 4);
+            }
+
+            dst.put(y * out.length, out);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.kazuofficial.blockexporter;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public final class PixelTransfer {
+    public static final int BYTES_PER_PIXEL = 4;
+
+    private PixelTransfer() {
+    }
+
+    public static void copyFlipped(ByteBuffer src, int width, int height, ByteBuffer dst) {
+        int rowBytes = width * BYTES_PER_PIXEL;
+        for (int row = 0; row < height; row++) {
+            dst.put((height - row - 1) * rowBytes, src, row * rowBytes, rowBytes);
+        }
+    }
+
+    public static void copyRect(ByteBuffer src, int srcWidth, int srcX, int srcY,
+                                ByteBuffer dst, int dstWidth, int dstX, int dstY,
+                                int width, int height) {
+        int rowBytes = width * BYTES_PER_PIXEL;
+        for (int row = 0; row < height; row++) {
+            int srcOffset = ((srcY + row) * srcWidth + srcX) * BYTES_PER_PIXEL;
+            int dstOffset = ((dstY + row) * dstWidth + dstX) * BYTES_PER_PIXEL;
+            dst.put(dstOffset, src, srcOffset, rowBytes);
+        }
+    }
+
+    /**
+     * Box filters {@code src} down by {@code factor} and flips it vertically.
+     * Only the legacy supersampled screenshot path downscales, exports always
+     * read back at factor 1.
+     */
+    public static void downscaleFlipped(ByteBuffer src, int srcWidth, int srcHeight, int factor, ByteBuffer dst) {
+        if (srcWidth % factor != 0 || srcHeight % factor != 0) {
+            throw new IllegalArgumentException("Image size is not divisible by downscale factor");
+        }
+        int rowLength = srcWidth * BYTES_PER_PIXEL;
+        int dstWidth = srcWidth / factor;
+        int dstHeight = srcHeight / factor;
+        int area = factor * factor;
+        byte[] row = new byte[rowLength];
+        int[] sums = new int[rowLength];
+        byte[] out = new byte[dstWidth * BYTES_PER_PIXEL];
+
+        for (int y = 0; y < dstHeight; y++) {
+            Arrays.fill(sums, 0);
+            for (int t = 0; t < factor; t++) {
+                src.get((y * factor + t) * rowLength, row);
+                for (int k = 0; k < rowLength; k++) {
+                    sums[k] += row[k] & 0xFF;
+                }
+            }
+
+            reduceRow(sums, factor, area, out);
+            dst.put((dstHeight - y - 1) * out.length, out);
+        }
+    }
+
+    private static void reduceRow(int[] sums, int factor, int area, byte[] out) {
+        int dstWidth = out.length / BYTES_PER_PIXEL;
+        for (int x = 0; x < dstWidth; x++) {
+            int base = x * factor * BYTES_PER_PIXEL;
+            for (int c = 0; c < BYTES_PER_PIXEL; c++) {
+                int sum = 0;
+                for (int s = 0; s < factor; s++) {
+                    sum += sums[base + s * BYTES_PER_PIXEL + c];
+                }
+                out[x * BYTES_PER_PIXEL + c] = (byte) (sum / area);
+            }
+        }
+    }
+}
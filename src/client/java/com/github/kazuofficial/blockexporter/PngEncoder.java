@@ -0,0 +1,480 @@
+package com.github.kazuofficial.blockexporter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+public class PngEncoder implements ImageEncoder {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int BYTES_PER_PIXEL = PixelTransfer.BYTES_PER_PIXEL;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int MIN_CHUNK_BYTES = 128 * 1024;
+    private static final int MAX_PALETTE_PIXELS = 64 * 64;
+
+    private final Options options;
+
+    public PngEncoder(Options options) {
+        this.options = options;
+    }
+
+    public Options getOptions() {
+        return this.options;
+    }
+
+    @Override
+    public String getExtension() {
+        return "png";
+    }
+
+    @Override
+    public ByteBuffer[] encodeImage(ByteBuffer rgba, int width, int height) {
+        return new ByteBuffer[]{ByteBuffer.wrap(encode(rgba, width, height))};
+    }
+
+    @Override
+    public ByteBuffer[] encodeAnimation(List<ByteBuffer> frames, int width, int height, int frameDelayMillis) {
+        return new ByteBuffer[]{ByteBuffer.wrap(encodeAnimated(frames, width, height, frameDelayMillis))};
+    }
+
+    public byte[] encode(ByteBuffer rgba, int width, int height) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(width * height + 1024);
+        try {
+            encode(rgba, width, height, output);
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory PNG encoding failed", e);
+        }
+        return output.toByteArray();
+    }
+
+    public void encode(ByteBuffer rgba, int width, int height, OutputStream output) throws IOException {
+        output.write(SIGNATURE);
+
+        Palette palette = this.options.palette() && width * height <= MAX_PALETTE_PIXELS ? Palette.build(rgba, width, height) : null;
+        byte[] scanlines;
+        int rowLength;
+        if (palette != null) {
+            rowLength = (width * palette.bitDepth() + 7) / 8;
+            scanlines = palette.indexScanlines(rgba, width, height, rowLength);
+        } else {
+            rowLength = width * BYTES_PER_PIXEL;
+            scanlines = filterScanlines(rgba, width, height);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(13);
+        header.putInt(width).putInt(height);
+        if (palette != null) {
+            header.put((byte) palette.bitDepth()).put((byte) 3);
+        } else {
+            header.put((byte) 8).put((byte) 6);
+        }
+        header.put((byte) 0).put((byte) 0).put((byte) 0);
+        writeChunk(output, "IHDR", header.array(), 0, 13);
+
+        if (palette != null) {
+            writeChunk(output, "PLTE", palette.rgb(), 0, palette.rgb().length);
+            if (palette.alpha().length > 0) {
+                writeChunk(output, "tRNS", palette.alpha(), 0, palette.alpha().length);
+            }
+        }
+
+        for (byte[] data : compress(scanlines, height, rowLength + 1)) {
+            writeChunk(output, "IDAT", data, 0, data.length);
+        }
+        writeChunk(output, "IEND", new byte[0], 0, 0);
+    }
+
+    /**
+     * Encodes frames as an APNG that plays in a loop. After the first frame only
+     * the rectangle that changed since the previous frame is stored, and frames
+     * identical to their predecessor just extend its delay, so mostly static
+     * animations stay close to the size of a single PNG. Palette output isn't
+     * used for animations since APNG frames share one palette.
+     */
+    public byte[] encodeAnimated(List<ByteBuffer> frames, int width, int height, int frameDelayMillis) {
+        List<FrameRegion> regions = new ArrayList<>();
+        List<Integer> sources = new ArrayList<>();
+        regions.add(new FrameRegion(0, 0, width, height, frameDelayMillis));
+        sources.add(0);
+        for (int i = 1; i < frames.size(); i++) {
+            FrameRegion changed = changedRegion(frames.get(sources.getLast()), frames.get(i), width, height, frameDelayMillis);
+            if (changed == null) {
+                FrameRegion last = regions.removeLast();
+                regions.add(new FrameRegion(last.x(), last.y(), last.width(), last.height(), last.delayMillis() + frameDelayMillis));
+            } else {
+                regions.add(changed);
+                sources.add(i);
+            }
+        }
+        if (regions.size() == 1) {
+            return encode(frames.getFirst(), width, height);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(width * height * 2 + 1024);
+        try {
+            output.write(SIGNATURE);
+            ByteBuffer header = ByteBuffer.allocate(13);
+            header.putInt(width).putInt(height).put((byte) 8).put((byte) 6).put((byte) 0).put((byte) 0).put((byte) 0);
+            writeChunk(output, "IHDR", header.array(), 0, 13);
+
+            ByteBuffer animationControl = ByteBuffer.allocate(8).putInt(regions.size()).putInt(0);
+            writeChunk(output, "acTL", animationControl.array(), 0, 8);
+
+            int sequence = 0;
+            for (int i = 0; i < regions.size(); i++) {
+                FrameRegion region = regions.get(i);
+                ByteBuffer frameControl = ByteBuffer.allocate(26)
+                    .putInt(sequence++)
+                    .putInt(region.width()).putInt(region.height())
+                    .putInt(region.x()).putInt(region.y())
+                    .putShort((short) Math.min(region.delayMillis(), 0xFFFF)).putShort((short) 1000)
+                    .put((byte) 0).put((byte) 0);
+                writeChunk(output, "fcTL", frameControl.array(), 0, 26);
+
+                ByteBuffer pixels = frames.get(sources.get(i));
+                if (i > 0) {
+                    ByteBuffer cropped = ByteBuffer.allocate(region.width() * region.height() * BYTES_PER_PIXEL);
+                    PixelTransfer.copyRect(pixels, width, region.x(), region.y(), cropped, region.width(), 0, 0, region.width(), region.height());
+                    pixels = cropped;
+                }
+                List<byte[]> parts = compress(filterScanlines(pixels, region.width(), region.height()), region.height(), region.width() * BYTES_PER_PIXEL + 1);
+
+                if (i == 0) {
+                    for (byte[] data : parts) {
+                        writeChunk(output, "IDAT", data, 0, data.length);
+                    }
+                } else {
+                    ByteArrayOutputStream frameData = new ByteArrayOutputStream();
+                    writeInt(frameData, sequence++);
+                    for (byte[] data : parts) {
+                        frameData.write(data);
+                    }
+                    writeChunk(output, "fdAT", frameData.toByteArray(), 0, frameData.size());
+                }
+            }
+            writeChunk(output, "IEND", new byte[0], 0, 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory APNG encoding failed", e);
+        }
+        return output.toByteArray();
+    }
+
+    private static FrameRegion changedRegion(ByteBuffer previous, ByteBuffer current, int width, int height, int delayMillis) {
+        int minX = width;
+        int minY = height;
+        int maxX = -1;
+        int maxY = -1;
+        for (int y = 0; y < height; y++) {
+            int row = y * width * BYTES_PER_PIXEL;
+            for (int x = 0; x < width; x++) {
+                int offset = row + x * BYTES_PER_PIXEL;
+                if (previous.getInt(offset) != current.getInt(offset)) {
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = y;
+                }
+            }
+        }
+        return maxX < 0 ? null : new FrameRegion(minX, minY, maxX - minX + 1, maxY - minY + 1, delayMillis);
+    }
+
+    private byte[] filterScanlines(ByteBuffer rgba, int width, int height) {
+        int rowLength = width * BYTES_PER_PIXEL;
+        int stride = rowLength + 1;
+        byte[] scanlines = new byte[stride * height];
+        int rowsPerTask = Math.max(1, MIN_CHUNK_BYTES / stride);
+
+        if (height <= rowsPerTask) {
+            filterRows(rgba, rowLength, 0, height, scanlines);
+            return scanlines;
+        }
+
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int start = 0; start < height; start += rowsPerTask) {
+            int from = start;
+            int to = Math.min(height, start + rowsPerTask);
+            tasks.add(CompletableFuture.runAsync(() -> filterRows(rgba, rowLength, from, to, scanlines), ForkJoinPool.commonPool()));
+        }
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+        return scanlines;
+    }
+
+    private void filterRows(ByteBuffer rgba, int rowLength, int from, int to, byte[] scanlines) {
+        byte[] previous = new byte[rowLength];
+        byte[] current = new byte[rowLength];
+        byte[] candidate = new byte[rowLength];
+        if (from > 0) {
+            rgba.get((from - 1) * rowLength, previous);
+        }
+
+        for (int row = from; row < to; row++) {
+            rgba.get(row * rowLength, current);
+            int offset = row * (rowLength + 1);
+            Filter filter = this.options.filter();
+
+            if (filter == Filter.ADAPTIVE) {
+                long bestScore = Long.MAX_VALUE;
+                for (Filter option : Filter.BASIC) {
+                    applyFilter(option, current, previous, candidate);
+                    long score = score(option, candidate);
+                    if (score < bestScore) {
+                        bestScore = score;
+                        filter = option;
+                        System.arraycopy(candidate, 0, scanlines, offset + 1, rowLength);
+                    }
+                }
+            } else {
+                applyFilter(filter, current, previous, candidate);
+                System.arraycopy(candidate, 0, scanlines, offset + 1, rowLength);
+            }
+            scanlines[offset] = (byte) filter.ordinal();
+
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+    }
+
+    private static void applyFilter(Filter filter, byte[] row, byte[] previous, byte[] out) {
+        int length = row.length;
+        switch (filter) {
+            case NONE -> System.arraycopy(row, 0, out, 0, length);
+            case SUB -> {
+                for (int i = 0; i < length; i++) {
+                    int left = i >= BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] & 0xFF : 0;
+                    out[i] = (byte) (row[i] - left);
+                }
+            }
+            case UP -> {
+                for (int i = 0; i < length; i++) {
+                    out[i] = (byte) (row[i] - previous[i]);
+                }
+            }
+            case AVERAGE -> {
+                for (int i = 0; i < length; i++) {
+                    int left = i >= BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] & 0xFF : 0;
+                    out[i] = (byte) (row[i] - ((left + (previous[i] & 0xFF)) >>> 1));
+                }
+            }
+            case PAETH -> {
+                for (int i = 0; i < length; i++) {
+                    int left = i >= BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] & 0xFF : 0;
+                    int upLeft = i >= BYTES_PER_PIXEL ? previous[i - BYTES_PER_PIXEL] & 0xFF : 0;
+                    out[i] = (byte) (row[i] - paeth(left, previous[i] & 0xFF, upLeft));
+                }
+            }
+            default -> throw new IllegalArgumentException("Not a scanline filter: " + filter);
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private static long score(Filter filter, byte[] filtered) {
+        if (filter == Filter.NONE) {
+            long sum = 0;
+            for (byte value : filtered) {
+                sum += value & 0xFF;
+            }
+            return sum;
+        }
+
+        long sum = 0;
+        for (byte value : filtered) {
+            sum += Math.abs(value);
+        }
+        return sum;
+    }
+
+    private List<byte[]> compress(byte[] data, int rows, int stride) {
+        int rowsPerChunk = Math.max(1, MIN_CHUNK_BYTES / stride);
+        int chunkCount = (rows + rowsPerChunk - 1) / rowsPerChunk;
+
+        Adler32 adler = new Adler32();
+        adler.update(data, 0, data.length);
+
+        List<byte[]> parts = new ArrayList<>(chunkCount + 2);
+        parts.add(zlibHeader(this.options.compressionLevel()));
+
+        if (chunkCount <= 1) {
+            parts.add(deflate(data, 0, data.length, -1, true));
+        } else {
+            List<CompletableFuture<byte[]>> tasks = new ArrayList<>(chunkCount);
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                int start = chunk * rowsPerChunk * stride;
+                int end = Math.min(data.length, (chunk + 1) * rowsPerChunk * stride);
+                boolean last = chunk == chunkCount - 1;
+                tasks.add(CompletableFuture.supplyAsync(() -> deflate(data, start, end - start, start, last), ForkJoinPool.commonPool()));
+            }
+            for (CompletableFuture<byte[]> task : tasks) {
+                parts.add(task.join());
+            }
+        }
+
+        int checksum = (int) adler.getValue();
+        parts.add(new byte[]{(byte) (checksum >>> 24), (byte) (checksum >>> 16), (byte) (checksum >>> 8), (byte) checksum});
+        return parts;
+    }
+
+    private byte[] deflate(byte[] data, int offset, int length, int dictionaryEnd, boolean last) {
+        Deflater deflater = new Deflater(this.options.compressionLevel(), true);
+        try {
+            if (dictionaryEnd > 0) {
+                int dictionaryStart = Math.max(0, dictionaryEnd - DICTIONARY_SIZE);
+                deflater.setDictionary(data, dictionaryStart, dictionaryEnd - dictionaryStart);
+            }
+            deflater.setInput(data, offset, length);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, length / 2));
+            byte[] buffer = new byte[64 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    output.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int written;
+                do {
+                    written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    output.write(buffer, 0, written);
+                } while (written == buffer.length || !deflater.needsInput());
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] zlibHeader(int level) {
+        int compressionMethod = 0x78;
+        int levelFlag = level < 2 ? 0 : level < 6 ? 1 : level == 6 ? 2 : 3;
+        int flags = levelFlag << 6;
+        flags += 31 - ((compressionMethod << 8) + flags) % 31;
+        return new byte[]{(byte) compressionMethod, (byte) flags};
+    }
+
+    private static void writeChunk(OutputStream output, String type, byte[] data, int offset, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+
+        writeInt(output, length);
+        output.write(typeBytes);
+        output.write(data, offset, length);
+        writeInt(output, (int) crc.getValue());
+    }
+
+    private static void writeInt(OutputStream output, int value) throws IOException {
+        output.write(value >>> 24);
+        output.write(value >>> 16);
+        output.write(value >>> 8);
+        output.write(value);
+    }
+
+    public enum Filter {
+        NONE,
+        SUB,
+        UP,
+        AVERAGE,
+        PAETH,
+        ADAPTIVE;
+
+        private static final Filter[] BASIC = {NONE, SUB, UP, AVERAGE, PAETH};
+    }
+
+    private record FrameRegion(int x, int y, int width, int height, int delayMillis) {
+    }
+
+    public record Options(int compressionLevel, Filter filter, boolean palette) {
+        public static final Options FAST = new Options(1, Filter.SUB, true);
+        public static final Options DEFAULT = new Options(6, Filter.ADAPTIVE, true);
+        public static final Options SMALLEST = new Options(9, Filter.ADAPTIVE, true);
+
+        public Options {
+            if (compressionLevel < 0 || compressionLevel > 9) {
+                throw new IllegalArgumentException("Compression level must be between 0 and 9: " + compressionLevel);
+            }
+        }
+    }
+
+    private record Palette(byte[] rgb, byte[] alpha, Map<Integer, Integer> indices, int bitDepth) {
+        private static Palette build(ByteBuffer rgba, int width, int height) {
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (int i = 0; i < width * height; i++) {
+                int color = rgba.getInt(i * BYTES_PER_PIXEL);
+                if (counts.merge(color, 1, Integer::sum) == 1 && counts.size() > 256) {
+                    return null;
+                }
+            }
+
+            Integer[] colors = counts.keySet().toArray(Integer[]::new);
+            Arrays.sort(colors, Comparator.<Integer>comparingInt(value -> alphaOf(rgba, value))
+                .thenComparing(counts::get, Comparator.reverseOrder()));
+
+            byte[] rgb = new byte[colors.length * 3];
+            int translucent = 0;
+            Map<Integer, Integer> indices = new HashMap<>();
+            ByteBuffer color = ByteBuffer.allocate(BYTES_PER_PIXEL).order(rgba.order());
+            for (int i = 0; i < colors.length; i++) {
+                color.putInt(0, colors[i]);
+                rgb[i * 3] = color.get(0);
+                rgb[i * 3 + 1] = color.get(1);
+                rgb[i * 3 + 2] = color.get(2);
+                if ((color.get(3) & 0xFF) != 0xFF) {
+                    translucent = i + 1;
+                }
+                indices.put(colors[i], i);
+            }
+
+            byte[] alpha = new byte[translucent];
+            for (int i = 0; i < translucent; i++) {
+                color.putInt(0, colors[i]);
+                alpha[i] = color.get(3);
+            }
+
+            int bitDepth = colors.length <= 2 ? 1 : colors.length <= 4 ? 2 : colors.length <= 16 ? 4 : 8;
+            return new Palette(rgb, alpha, indices, bitDepth);
+        }
+
+        private static int alphaOf(ByteBuffer rgba, int color) {
+            return rgba.order() == ByteOrder.LITTLE_ENDIAN ? color >>> 24 : color & 0xFF;
+        }
+
+        private byte[] indexScanlines(ByteBuffer rgba, int width, int height, int rowLength) {
+            byte[] scanlines = new byte[(rowLength + 1) * height];
+            int pixelsPerByte = 8 / this.bitDepth;
+            for (int y = 0; y < height; y++) {
+                int rowOffset = y * (rowLength + 1) + 1;
+                for (int x = 0; x < width; x++) {
+                    int index = this.indices.get(rgba.getInt((y * width + x) * BYTES_PER_PIXEL));
+                    int shift = 8 - this.bitDepth * (x % pixelsPerByte + 1);
+                    scanlines[rowOffset + x / pixelsPerByte] |= (byte) (index << shift);
+                }
+            }
+            return scanlines;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.kazuofficial.blockexporter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the "Quite OK Image" format: a single pass over the pixels that
+ * stores each one as a run, a reference into a small hash table of recent
+ * colors, a small difference to its predecessor, or verbatim. Files are
+ * larger than PNG but encode many times faster, which suits intermediate
+ * pipeline stages.
+ */
+public class QoiEncoder implements ImageEncoder {
+    private static final int HEADER_SIZE = 14;
+    private static final byte[] END_MARKER = {0, 0, 0, 0, 0, 0, 0, 1};
+    private static final int BYTES_PER_PIXEL = PixelTransfer.BYTES_PER_PIXEL;
+    // the worst case is a tag byte followed by all four channels
+    private static final int MAX_PIXEL_BYTES = BYTES_PER_PIXEL + 1;
+
+    private static final int OP_INDEX = 0x00;
+    private static final int OP_DIFF = 0x40;
+    private static final int OP_LUMA = 0x80;
+    private static final int OP_RUN = 0xC0;
+    private static final int OP_RGB = 0xFE;
+    private static final int OP_RGBA = 0xFF;
+    private static final int MAX_RUN = 62;
+    private static final int CHANNELS_RGBA = 4;
+    private static final int COLORSPACE_SRGB = 0;
+
+    @Override
+    public String getExtension() {
+        return "qoi";
+    }
+
+    @Override
+    public ByteBuffer[] encodeImage(ByteBuffer rgba, int width, int height) {
+        int pixels = width * height;
+        byte[] out = new byte[HEADER_SIZE + pixels * MAX_PIXEL_BYTES + END_MARKER.length];
+        ByteBuffer.wrap(out)
+            .put((byte) 'q').put((byte) 'o').put((byte) 'i').put((byte) 'f')
+            .putInt(width).putInt(height)
+            .put((byte) CHANNELS_RGBA).put((byte) COLORSPACE_SRGB);
+
+        // colors are packed as 0xRRGGBBAA; decoders start from opaque black
+        int[] index = new int[64];
+        int previous = 0x000000FF;
+        int run = 0;
+        int position = HEADER_SIZE;
+
+        for (int i = 0; i < pixels; i++) {
+            int offset = i * BYTES_PER_PIXEL;
+            int r = rgba.get(offset) & 0xFF;
+            int g = rgba.get(offset + 1) & 0xFF;
+            int b = rgba.get(offset + 2) & 0xFF;
+            int a = rgba.get(offset + 3) & 0xFF;
+            int pixel = r << 24 | g << 16 | b << 8 | a;
+
+            if (pixel == previous) {
+                run++;
+                if (run == MAX_RUN || i == pixels - 1) {
+                    out[position++] = (byte) (OP_RUN | (run - 1));
+                    run = 0;
+                }
+                continue;
+            }
+            if (run > 0) {
+                out[position++] = (byte) (OP_RUN | (run - 1));
+                run = 0;
+            }
+
+            int hash = (r * 3 + g * 5 + b * 7 + a * 11) & 63;
+            if (index[hash] == pixel) {
+                out[position++] = (byte) (OP_INDEX | hash);
+            } else {
+                index[hash] = pixel;
+                if (a == (previous & 0xFF)) {
+                    // differences wrap around like the byte arithmetic of the decoder
+                    int dr = (byte) (r - (previous >>> 24));
+                    int dg = (byte) (g - (previous >>> 16 & 0xFF));
+                    int db = (byte) (b - (previous >>> 8 & 0xFF));
+                    int drg = dr - dg;
+                    int dbg = db - dg;
+                    if (dr >= -2 && dr <= 1 && dg >= -2 && dg <= 1 && db >= -2 && db <= 1) {
+                        out[position++] = (byte) (OP_DIFF | (dr + 2) << 4 | (dg + 2) << 2 | (db + 2));
+                    } else if (drg >= -8 && drg <= 7 && dg >= -32 && dg <= 31 && dbg >= -8 && dbg <= 7) {
+                        out[position++] = (byte) (OP_LUMA | (dg + 32));
+                        out[position++] = (byte) ((drg + 8) << 4 | (dbg + 8));
+                    } else {
+                        out[position++] = (byte) OP_RGB;
+                        out[position++] = (byte) r;
+                        out[position++] = (byte) g;
+                        out[position++] = (byte) b;
+                    }
+                } else {
+                    out[position++] = (byte) OP_RGBA;
+                    out[position++] = (byte) r;
+                    out[position++] = (byte) g;
+                    out[position++] = (byte) b;
+                    out[position++] = (byte) a;
+                }
+            }
+            previous = pixel;
+        }
+
+        System.arraycopy(END_MARKER, 0, out, position, END_MARKER.length);
+        position += END_MARKER.length;
+        return new ByteBuffer[]{ByteBuffer.wrap(out, 0, position)};
+    }
+}
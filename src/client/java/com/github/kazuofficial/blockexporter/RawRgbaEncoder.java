@@ -0,0 +1,48 @@
+package com.github.kazuofficial.blockexporter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Stores pixels as they are, behind a {@value #HEADER_SIZE} byte header of
+ * little-endian 32-bit fields: the magic {@code "RGBA"}, width, height, frame
+ * count and frame delay in milliseconds. Frames follow back to back as
+ * top-down rows of 8-bit RGBA with straight alpha. Nothing is encoded, so
+ * the pixel memory itself is what gets written.
+ */
+public class RawRgbaEncoder implements ImageEncoder {
+    public static final int HEADER_SIZE = 20;
+    private static final int MAGIC = 'R' | 'G' << 8 | 'B' << 16 | 'A' << 24;
+
+    @Override
+    public String getExtension() {
+        return "rgba";
+    }
+
+    @Override
+    public ByteBuffer[] encodeImage(ByteBuffer rgba, int width, int height) {
+        return new ByteBuffer[]{header(width, height, 1, 0), pixels(rgba, width, height)};
+    }
+
+    @Override
+    public ByteBuffer[] encodeAnimation(List<ByteBuffer> frames, int width, int height, int frameDelayMillis) {
+        ByteBuffer[] data = new ByteBuffer[frames.size() + 1];
+        data[0] = header(width, height, frames.size(), frameDelayMillis);
+        for (int i = 0; i < frames.size(); i++) {
+            data[i + 1] = pixels(frames.get(i), width, height);
+        }
+        return data;
+    }
+
+    private static ByteBuffer header(int width, int height, int frames, int frameDelayMillis) {
+        return ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(MAGIC).putInt(width).putInt(height).putInt(frames).putInt(frameDelayMillis)
+            .flip();
+    }
+
+    private static ByteBuffer pixels(ByteBuffer rgba, int width, int height) {
+        // a view of its own, so writing it doesn't move the caller's position
+        return rgba.slice(0, width * height * PixelTransfer.BYTES_PER_PIXEL);
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.kazuofficial.blockexporter;
+
+import com.mojang.blaze3d.buffers.GpuBuffer;
+import com.mojang.blaze3d.systems.CommandEncoder;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.textures.GpuTexture;
+
+import net.minecraft.client.gl.SimpleFramebuffer;
+import net.minecraft.client.texture.NativeImage;
+
+import java.util.function.Consumer;
+
+class ReadbackSlot {
+    private final SimpleFramebuffer framebuffer;
+    private final GpuBuffer buffer;
+    private final int pixelSize;
+    private volatile boolean inFlight = false;
+    private boolean closed = false;
+
+    ReadbackSlot(String name, int size) {
+        this.framebuffer = new SimpleFramebuffer(name, size, size, true);
+        GpuTexture colorAttachment = this.framebuffer.getColorAttachment();
+        if (colorAttachment == null) {
+            throw new IllegalStateException("Readback framebuffer has no color attachment");
+        }
+        this.pixelSize = colorAttachment.getFormat().pixelSize();
+        this.buffer = RenderSystem.getDevice().createBuffer(() -> name + " readback buffer",
+            GpuBuffer.USAGE_MAP_READ | GpuBuffer.USAGE_COPY_DST, size * size * this.pixelSize);
+    }
+
+    SimpleFramebuffer framebuffer() {
+        return this.framebuffer;
+    }
+
+    boolean isAvailable() {
+        return !this.inFlight && !this.closed;
+    }
+
+    void readback(CommandEncoder commandEncoder, ExportStats stats, Consumer<NativeImage> callback) {
+        int width = this.framebuffer.textureWidth;
+        int height = this.framebuffer.textureHeight;
+        this.inFlight = true;
+        long submitted = System.nanoTime();
+
+        commandEncoder.copyTextureToBuffer(this.framebuffer.getColorAttachment(), this.buffer, 0, () -> {
+            long copied = System.nanoTime();
+            stats.record(null, ExportStats.Stage.READBACK, copied - submitted);
+            NativeImage image = null;
+            // the copy stays on the render thread: the buffer has to be unmapped on the thread that owns the GL context,
+            // and keeping it mapped until a writer is done would hold the slot for the whole encode; a full grid is
+            // one row-wise bulk copy of up to 16 MB
+            try (GpuBuffer.MappedView mappedView = commandEncoder.mapBuffer(this.buffer, true, false)) {
+                image = ItemRenderer.readPixels(mappedView.data(), width, height, this.pixelSize, 1);
+                stats.record(null, ExportStats.Stage.PIXELS, System.nanoTime() - copied);
+            } catch (RuntimeException e) {
+                BlockExporter.LOGGER.error("Failed to read back export framebuffer", e);
+            } finally {
+                this.inFlight = false;
+                if (this.closed) {
+                    destroy();
+                }
+            }
+            callback.accept(image);
+        }, 0);
+    }
+
+    void close() {
+        this.closed = true;
+        if (!this.inFlight) {
+            destroy();
+        }
+    }
+
+    private void destroy() {
+        this.buffer.close();
+        this.framebuffer.delete();
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.kazuofficial.blockexporter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encoded images kept in memory up to a total size, evicting the least
+ * recently requested ones first. An image larger than the whole cache is
+ * never stored.
+ */
+public class RenderCache<K> {
+    private final long limitBytes;
+    private final LinkedHashMap<K, byte[]> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private long usedBytes = 0;
+
+    public RenderCache(long limitBytes) {
+        if (limitBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + limitBytes);
+        }
+        this.limitBytes = limitBytes;
+    }
+
+    public synchronized byte[] get(K key) {
+        return this.entries.get(key);
+    }
+
+    public synchronized void put(K key, byte[] data) {
+        byte[] previous = this.entries.remove(key);
+        if (previous != null) {
+            this.usedBytes -= previous.length;
+        }
+        if (data.length > this.limitBytes) {
+            return;
+        }
+
+        this.entries.put(key, data);
+        this.usedBytes += data.length;
+        Iterator<Map.Entry<K, byte[]>> eldest = this.entries.entrySet().iterator();
+        while (this.usedBytes > this.limitBytes) {
+            this.usedBytes -= eldest.next().getValue().length;
+            eldest.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+        this.usedBytes = 0;
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return this.usedBytes;
+    }
+}
@@ -0,0 +1,147 @@
+package com.github.kazuofficial.blockexporter;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.OverlayTexture;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.client.render.item.ItemRenderState;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemDisplayContext;
+import net.minecraft.item.ItemStack;
+import net.minecraft.registry.Registries;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Orders export items so consecutive draws share GPU state. Every item's
+ * model is resolved and drawn into a recorder that only notes which render
+ * layers it asks for; items are then grouped by lighting and by that list of
+ * layers, so the shader lights, pipeline and bound textures mostly stay the
+ * same from one item to the next. The sort is stable, items with the same
+ * state keep their registry order and the exported files don't change.
+ *
+ * <p>Resolving a model is about as expensive as looking it up again for the
+ * real draw, so the export pays it twice. Planning therefore runs in slices
+ * of the frame budget like rendering does, and the export reports its items
+ * per second so the two orders can be compared.
+ */
+public final class RenderOrder {
+    private final List<Item> items;
+    private final List<PlannedItem> planned;
+    private final Map<List<RenderLayer>, Integer> groups = new HashMap<>();
+    private final ItemRenderState renderState = new ItemRenderState();
+    private final LayerRecorder recorder = new LayerRecorder();
+    private final MatrixStack matrices = new MatrixStack();
+    private long planningNanos = 0;
+    private List<Item> order;
+
+    public RenderOrder(List<Item> items) {
+        this.items = List.copyOf(items);
+        this.planned = new ArrayList<>(items.size());
+    }
+
+    /**
+     * Resolves items until {@code budgetNanos} have passed, at least one per
+     * call. Returns true once every item is planned and {@link #getOrder()}
+     * holds the result.
+     */
+    public boolean plan(long budgetNanos) {
+        if (this.order != null) {
+            return true;
+        }
+
+        MinecraftClient client = MinecraftClient.getInstance();
+        long start = System.nanoTime();
+        do {
+            if (this.planned.size() == this.items.size()) {
+                break;
+            }
+            Item item = this.items.get(this.planned.size());
+            boolean sideLit = false;
+            int group = Integer.MAX_VALUE;
+            try {
+                client.getItemModelManager().clearAndUpdate(this.renderState, new ItemStack(item), ItemDisplayContext.GUI, client.world, null, 0);
+                this.renderState.render(this.matrices, this.recorder, 15728880, OverlayTexture.DEFAULT_UV);
+                sideLit = this.renderState.isSideLit();
+                List<RenderLayer> layers = this.recorder.finish();
+                Integer existing = this.groups.get(layers);
+                if (existing == null) {
+                    existing = this.groups.size();
+                    this.groups.put(layers, existing);
+                }
+                group = existing;
+            } catch (RuntimeException e) {
+                // the export reports items that fail to render, here they just go last
+                BlockExporter.LOGGER.debug("Couldn't resolve the render state of {}", Registries.ITEM.getId(item), e);
+                this.recorder.finish();
+            }
+            this.planned.add(new PlannedItem(item, sideLit, group));
+        } while (System.nanoTime() - start < budgetNanos);
+        this.planningNanos += System.nanoTime() - start;
+
+        if (this.planned.size() < this.items.size()) {
+            return false;
+        }
+        int changesBefore = countStateChanges(this.planned);
+        this.planned.sort(Comparator.comparing(PlannedItem::sideLit).thenComparingInt(PlannedItem::group));
+        BlockExporter.LOGGER.info("Planned render order of {} items in {} ms: {} render state groups, {} state changes instead of {}",
+            this.items.size(), this.planningNanos / 1_000_000, this.groups.size(), countStateChanges(this.planned), changesBefore);
+        this.order = this.planned.stream().map(PlannedItem::item).toList();
+        this.planned.clear();
+        this.groups.clear();
+        return true;
+    }
+
+    /**
+     * Render thread time spent planning so far.
+     */
+    public long getPlanningNanos() {
+        return this.planningNanos;
+    }
+
+    public List<Item> getOrder() {
+        if (this.order == null) {
+            throw new IllegalStateException("Render order is not planned yet");
+        }
+        return this.order;
+    }
+
+    private static int countStateChanges(List<PlannedItem> items) {
+        int changes = 0;
+        for (int i = 1; i < items.size(); i++) {
+            PlannedItem previous = items.get(i - 1);
+            PlannedItem current = items.get(i);
+            if (previous.sideLit() != current.sideLit() || previous.group() != current.group()) {
+                changes++;
+            }
+        }
+        return changes;
+    }
+
+    private record PlannedItem(Item item, boolean sideLit, int group) {
+    }
+
+    private static final class LayerRecorder implements VertexConsumerProvider {
+        private final Set<RenderLayer> layers = new LinkedHashSet<>();
+
+        @Override
+        public VertexConsumer getBuffer(RenderLayer layer) {
+            this.layers.add(layer);
+            return MeshCapture.DiscardingConsumer.INSTANCE;
+        }
+
+        List<RenderLayer> finish() {
+            List<RenderLayer> used = List.copyOf(this.layers);
+            this.layers.clear();
+            return used;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package com.github.kazuofficial.blockexporter;
+
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandManager;
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback;
+import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.resource.ResourceManagerHelper;
+import net.fabricmc.fabric.api.resource.SimpleSynchronousResourceReloadListener;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.registry.Registries;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.resource.ResourceType;
+import net.minecraft.text.Text;
+import net.minecraft.util.Identifier;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves item icons over HTTP on the loopback interface while the client
+ * runs, e.g. {@code GET /render/minecraft/diamond?size=64}, started with the
+ * {@code /blockexporter serve} client command or the
+ * {@code -Dblockexporter.serve=<port>} launch property. Icons are answered
+ * from an in-memory cache when possible; misses are queued, and every client
+ * tick renders all icons queued for a size in one
+ * {@link ItemRenderer#exportItemsBatch} call. Concurrent requests for the
+ * same icon wait for the same render.
+ */
+public final class RenderService implements AutoCloseable {
+    public static final String LAUNCH_PROPERTY = "blockexporter.serve";
+    public static final int DEFAULT_PORT = 8787;
+
+    private static final String PATH_PREFIX = "/render/";
+    private static final int DEFAULT_SIZE = 64;
+    private static final int MIN_SIZE = 16;
+    private static final int MAX_SIZE = 1024;
+    private static final long CACHE_BYTES = 64L * 1024 * 1024;
+    // a renderer is kept per size, so each only gets a small share of the memory an export would use
+    private static final int READBACK_SLOTS = 2;
+    private static final long IMAGE_MEMORY_BUDGET = 64L * 1024 * 1024;
+    private static final long RESPONSE_TIMEOUT_SECONDS = 30;
+    // renderers hold framebuffers and native images, so sizes nobody asked for in a while give them back
+    private static final long RENDERER_IDLE_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private static RenderService running;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final RenderCache<Key> cache = new RenderCache<>(CACHE_BYTES);
+    private final Map<Key, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private final Queue<Request> queued = new ConcurrentLinkedQueue<>();
+    // only touched on the client thread
+    private final Map<Integer, SizeRenderer> renderers = new HashMap<>();
+    // bumped on the client thread, read by writer threads finishing renders
+    private volatile int resourceGeneration = 0;
+
+    private RenderService(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server.createContext(PATH_PREFIX, this::handle);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    public static void register() {
+        ClientCommandRegistrationCallback.EVENT.register((dispatcher, registryAccess) -> dispatcher.register(
+            ClientCommandManager.literal("blockexporter")
+                .then(ClientCommandManager.literal("serve")
+                    .executes(context -> runServe(context, DEFAULT_PORT))
+                    .then(ClientCommandManager.literal("stop")
+                        .executes(context -> {
+                            if (running == null) {
+                                context.getSource().sendError(Text.literal("The render service is not running"));
+                                return 0;
+                            }
+                            stop();
+                            context.getSource().sendFeedback(Text.literal("Render service stopped"));
+                            return 1;
+                        }))
+                    .then(ClientCommandManager.argument("port", IntegerArgumentType.integer(1, 65535))
+                        .executes(context -> runServe(context, IntegerArgumentType.getInteger(context, "port")))))));
+
+        ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(new SimpleSynchronousResourceReloadListener() {
+            @Override
+            public Identifier getFabricId() {
+                return Identifier.of(BlockExporter.MOD_ID, "render_service");
+            }
+
+            @Override
+            public void reload(ResourceManager manager) {
+                // cached icons show the textures and models of the resource packs they were rendered with,
+                // and renderers are rebuilt so nothing set up for the old resources is kept around
+                if (running != null) {
+                    synchronized (running.cache) {
+                        running.resourceGeneration++;
+                        running.cache.clear();
+                    }
+                }
+            }
+        });
+
+        ClientTickEvents.END_CLIENT_TICK.register(client -> {
+            if (running != null) {
+                running.tick(client);
+            }
+        });
+
+        ClientLifecycleEvents.CLIENT_STOPPING.register(client -> {
+            if (running != null) {
+                stop();
+            }
+        });
+
+        String launchPort = System.getProperty(LAUNCH_PROPERTY);
+        if (launchPort != null) {
+            try {
+                start(launchPort.isBlank() ? DEFAULT_PORT : Integer.parseInt(launchPort.trim()));
+            } catch (NumberFormatException e) {
+                BlockExporter.LOGGER.error("Invalid -D{} value '{}', expected a port number", LAUNCH_PROPERTY, launchPort);
+            } catch (IOException e) {
+                BlockExporter.LOGGER.error("Failed to start the render service on port {}", launchPort, e);
+            }
+        }
+    }
+
+    private static int runServe(CommandContext<FabricClientCommandSource> context, int port) {
+        if (running != null) {
+            context.getSource().sendError(Text.literal("The render service is already running on port " + running.getPort()));
+            return 0;
+        }
+        try {
+            start(port);
+        } catch (IOException e) {
+            BlockExporter.LOGGER.error("Failed to start the render service on port {}", port, e);
+            context.getSource().sendError(Text.literal("Failed to start the render service: " + e.getMessage()));
+            return 0;
+        }
+        context.getSource().sendFeedback(Text.literal("Serving item renders on http://127.0.0.1:" + port
+            + PATH_PREFIX + "<namespace>/<path>?size=" + DEFAULT_SIZE));
+        return 1;
+    }
+
+    private static void start(int port) throws IOException {
+        running = new RenderService(port);
+        BlockExporter.LOGGER.info("Render service listening on {}", running.server.getAddress());
+    }
+
+    private static void stop() {
+        running.close();
+        running = null;
+    }
+
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Only GET is supported");
+                return;
+            }
+
+            Key key;
+            try {
+                key = Key.parse(exchange.getRequestURI());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            Item item = Registries.ITEM.get(key.itemId());
+            if (!Registries.ITEM.containsId(key.itemId()) || item == Items.AIR) {
+                sendError(exchange, 404, "No item icon for " + key.itemId());
+                return;
+            }
+
+            byte[] png = this.cache.get(key);
+            boolean cached = png != null;
+            if (png == null) {
+                try {
+                    png = request(key).get(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (TimeoutException e) {
+                    sendError(exchange, 503, "Timed out waiting for the client to render " + key.itemId());
+                    return;
+                } catch (ExecutionException e) {
+                    sendError(exchange, 500, e.getCause().getMessage());
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.getResponseHeaders().set("X-Cache", cached ? "hit" : "miss");
+            exchange.sendResponseHeaders(200, png.length);
+            exchange.getResponseBody().write(png);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private CompletableFuture<byte[]> request(Key key) {
+        return this.inFlight.computeIfAbsent(key, missing -> {
+            CompletableFuture<byte[]> future = new CompletableFuture<>();
+            this.queued.add(new Request(missing, future));
+            return future;
+        });
+    }
+
+    private void complete(Request request, byte[] png, int generation) {
+        // cached before it leaves the in-flight map, so a request arriving in between still finds it;
+        // an icon drawn before a resource reload still answers its request but must not outlive the reload in the cache
+        synchronized (this.cache) {
+            if (generation == this.resourceGeneration) {
+                this.cache.put(request.key(), png);
+            }
+        }
+        this.inFlight.remove(request.key(), request.future());
+        request.future().complete(png);
+    }
+
+    private void fail(Request request, String message) {
+        this.inFlight.remove(request.key(), request.future());
+        request.future().completeExceptionally(new IllegalStateException(message));
+    }
+
+    private void tick(MinecraftClient client) {
+        // models and textures aren't usable while resources are loading
+        if (client.getOverlay() != null) {
+            return;
+        }
+
+        Map<Integer, List<Request>> bySize = new LinkedHashMap<>();
+        for (Request request = this.queued.poll(); request != null; request = this.queued.poll()) {
+            bySize.computeIfAbsent(request.key().size(), size -> new ArrayList<>()).add(request);
+        }
+
+        for (Map.Entry<Integer, List<Request>> entry : bySize.entrySet()) {
+            List<Request> requests = entry.getValue();
+            SizeRenderer renderer;
+            try {
+                renderer = this.renderers.computeIfAbsent(entry.getKey(), SizeRenderer::new);
+            } catch (RuntimeException e) {
+                BlockExporter.LOGGER.error("Failed to set up rendering at {}px", entry.getKey(), e);
+                requests.forEach(request -> fail(request, "Failed to set up rendering at " + entry.getKey() + "px"));
+                continue;
+            }
+            int consumed = renderer.render(requests);
+            // whatever found no free readback slot is rendered on a later tick
+            this.queued.addAll(requests.subList(consumed, requests.size()));
+        }
+
+        long now = System.nanoTime();
+        this.renderers.values().removeIf(renderer -> {
+            renderer.failUnwritten();
+            if (!renderer.isIdle() || (renderer.generation == this.resourceGeneration && now - renderer.lastUsed < RENDERER_IDLE_NANOS)) {
+                return false;
+            }
+            renderer.close();
+            return true;
+        });
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        for (Request request : List.copyOf(this.queued)) {
+            fail(request, "The render service stopped");
+        }
+        this.queued.clear();
+        for (SizeRenderer renderer : this.renderers.values()) {
+            renderer.close();
+        }
+        this.renderers.clear();
+        for (Map.Entry<Key, CompletableFuture<byte[]>> entry : Map.copyOf(this.inFlight).entrySet()) {
+            fail(new Request(entry.getKey(), entry.getValue()), "The render service stopped");
+        }
+        // handlers still waiting on a render are interrupted rather than left to time out
+        this.executor.shutdownNow();
+        this.cache.clear();
+        BlockExporter.LOGGER.info("Render service stopped");
+    }
+
+    private record Key(Identifier itemId, int size) {
+        static Key parse(URI uri) {
+            String path = uri.getPath().substring(PATH_PREFIX.length());
+            int separator = path.indexOf('/');
+            Identifier itemId = separator > 0 ? Identifier.tryParse(path.substring(0, separator) + ":" + path.substring(separator + 1)) : null;
+            if (itemId == null) {
+                throw new IllegalArgumentException("Expected " + PATH_PREFIX + "<namespace>/<path> but got " + uri.getPath());
+            }
+
+            int size = DEFAULT_SIZE;
+            String query = uri.getQuery();
+            if (query != null) {
+                for (String parameter : query.split("&")) {
+                    if (parameter.startsWith("size=")) {
+                        try {
+                            size = Integer.parseInt(parameter.substring("size=".length()));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Size is not a number: " + parameter);
+                        }
+                    }
+                }
+            }
+            if (size < MIN_SIZE || size > MAX_SIZE || Integer.bitCount(size) != 1) {
+                throw new IllegalArgumentException("Size must be a power of two from " + MIN_SIZE + " to " + MAX_SIZE + ": " + size);
+            }
+            return new Key(itemId, size);
+        }
+    }
+
+    private record Request(Key key, CompletableFuture<byte[]> future) {
+        String fileName() {
+            return FilesExportSink.fileName(this.key.itemId(), "png");
+        }
+    }
+
+    private record Batch(List<Request> requests, AtomicInteger completed) {
+    }
+
+    /**
+     * A request whose item has been drawn, with the resource generation it
+     * was drawn with.
+     */
+    private record Rendering(Request request, int generation) {
+    }
+
+    /**
+     * One item renderer per size, keeping its readback framebuffers between
+     * requests. Its output hands each written image to the request waiting
+     * for it instead of storing it. Closed once it has been idle for a while
+     * or the resources it was set up with were reloaded.
+     */
+    private final class SizeRenderer {
+        private final ItemRenderer renderer;
+        private final Map<String, Rendering> expected = new ConcurrentHashMap<>();
+        private final List<Batch> batches = new ArrayList<>();
+        private final int generation = resourceGeneration;
+        private long lastUsed = System.nanoTime();
+
+        SizeRenderer(int size) {
+            // every requested icon has to be written, so nothing may be skipped or aliased
+            ExportConfig config = ExportConfig.builder()
+                .textureSize(size)
+                .incremental(false)
+                .deduplicate(false)
+                .readbackSlots(READBACK_SLOTS)
+                .imageMemoryBudget(IMAGE_MEMORY_BUDGET)
+                .build();
+            this.renderer = new ItemRenderer(config, this::deliver, null);
+        }
+
+        int render(List<Request> requests) {
+            this.lastUsed = System.nanoTime();
+            List<ItemStack> stacks = new ArrayList<>(requests.size());
+            List<Rendering> renderings = new ArrayList<>(requests.size());
+            for (Request request : requests) {
+                // registered before rendering since writer threads may finish before the batch returns;
+                // reloads run on this thread too, so the generation can't change while the batch is drawn
+                Rendering rendering = new Rendering(request, resourceGeneration);
+                this.expected.put(request.fileName(), rendering);
+                renderings.add(rendering);
+                stacks.add(new ItemStack(Registries.ITEM.get(request.key().itemId())));
+            }
+
+            AtomicInteger completed = new AtomicInteger();
+            int consumed = this.renderer.exportItemsBatch(stacks, completed);
+            for (Rendering rendering : renderings.subList(consumed, renderings.size())) {
+                this.expected.remove(rendering.request().fileName(), rendering);
+            }
+            if (consumed > 0) {
+                this.batches.add(new Batch(List.copyOf(requests.subList(0, consumed)), completed));
+            }
+            return consumed;
+        }
+
+        /**
+         * Fails the requests of finished batches whose image never arrived,
+         * which happens when the item failed to render.
+         */
+        void failUnwritten() {
+            this.batches.removeIf(batch -> {
+                if (batch.completed().get() < batch.requests().size()) {
+                    return false;
+                }
+                for (Request request : batch.requests()) {
+                    Rendering rendering = this.expected.get(request.fileName());
+                    if (rendering != null && rendering.request().equals(request) && this.expected.remove(request.fileName(), rendering)) {
+                        fail(request, "Failed to render " + request.key().itemId() + ", see the game log");
+                    }
+                }
+                return true;
+            });
+        }
+
+        boolean isIdle() {
+            return this.batches.isEmpty() && this.expected.isEmpty();
+        }
+
+        private void deliver(String name, byte[] data) {
+            Rendering rendering = this.expected.remove(name);
+            if (rendering != null) {
+                complete(rendering.request(), data, rendering.generation());
+            }
+        }
+
+        void close() {
+            this.renderer.close();
+        }
+    }
+}
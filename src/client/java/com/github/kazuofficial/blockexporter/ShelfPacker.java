@@ -0,0 +1,80 @@
+package com.github.kazuofficial.blockexporter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ShelfPacker {
+    private final int width;
+    private final int height;
+    private final List<Shelf> shelves = new ArrayList<>();
+    private int usedWidth = 0;
+    private int usedHeight = 0;
+
+    public ShelfPacker(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public Placement place(int spriteWidth, int spriteHeight) {
+        if (spriteWidth > this.width || spriteHeight > this.height) {
+            throw new IllegalArgumentException("Sprite " + spriteWidth + "x" + spriteHeight
+                + " does not fit into a " + this.width + "x" + this.height + " sheet");
+        }
+
+        Shelf best = null;
+        for (Shelf shelf : this.shelves) {
+            if (shelf.height >= spriteHeight && this.width - shelf.nextX >= spriteWidth
+                && (best == null || shelf.height < best.height)) {
+                best = shelf;
+            }
+        }
+
+        if (best == null) {
+            if (this.usedHeight + spriteHeight > this.height) {
+                return null;
+            }
+            best = new Shelf(this.usedHeight, spriteHeight);
+            this.shelves.add(best);
+            this.usedHeight += spriteHeight;
+        }
+
+        Placement placement = new Placement(best.nextX, best.y, spriteWidth, spriteHeight);
+        best.nextX += spriteWidth;
+        this.usedWidth = Math.max(this.usedWidth, best.nextX);
+        return placement;
+    }
+
+    public boolean isEmpty() {
+        return this.shelves.isEmpty();
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getUsedWidth() {
+        return this.usedWidth;
+    }
+
+    public int getUsedHeight() {
+        return this.usedHeight;
+    }
+
+    public record Placement(int x, int y, int width, int height) {
+    }
+
+    private static final class Shelf {
+        private final int y;
+        private final int height;
+        private int nextX = 0;
+
+        private Shelf(int y, int height) {
+            this.y = y;
+            this.height = height;
+        }
+    }
+}
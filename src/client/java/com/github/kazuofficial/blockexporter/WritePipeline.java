@@ -0,0 +1,178 @@
+package com.github.kazuofficial.blockexporter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs export writes on a fixed set of virtual worker threads that is owned by
+ * a single export. Jobs that never get to run are handed back through
+ * {@link Job#discard()}, so whatever they hold is released exactly once
+ * whether the export finishes, is cancelled, or is closed early.
+ */
+public class WritePipeline implements AutoCloseable {
+    private static final long CANCEL_GRACE_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    public interface Job {
+        void run() throws Exception;
+
+        /**
+         * Called instead of {@link #run()} when the job is dropped by a cancel
+         * or submitted after the pipeline was shut down.
+         */
+        default void discard() {
+        }
+    }
+
+    private record Entry(Job job, CompletableFuture<Void> future) {
+    }
+
+    private static final Entry STOP = new Entry(null, null);
+
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> workers;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean cancelled = false;
+    private boolean closed = false;
+
+    public WritePipeline(String name, int workerCount) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("Worker count must be positive: " + workerCount);
+        }
+        this.workers = new ArrayList<>(workerCount);
+        Thread.Builder builder = Thread.ofVirtual().name(name + "-", 0);
+        for (int i = 0; i < workerCount; i++) {
+            this.workers.add(builder.start(this::work));
+        }
+    }
+
+    public CompletableFuture<Void> submit(Job job) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (!this.closed && !this.cancelled) {
+                this.pending.incrementAndGet();
+                this.queue.add(new Entry(job, future));
+                return future;
+            }
+        }
+        discard(new Entry(job, future));
+        return future;
+    }
+
+    /**
+     * Jobs that are queued or submitted from now on and have not started yet
+     * are discarded. Running jobs should check {@link #isCancelled()} between
+     * units of work and return early.
+     */
+    public void cancel() {
+        List<Entry> dropped = new ArrayList<>();
+        synchronized (this) {
+            this.cancelled = true;
+            this.queue.drainTo(dropped);
+        }
+        for (Entry entry : dropped) {
+            if (entry == STOP) {
+                this.queue.add(STOP);
+            } else {
+                this.pending.decrementAndGet();
+                discard(entry);
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    public int getPending() {
+        return this.pending.get();
+    }
+
+    /**
+     * Waits until every queued job has run, or been discarded after a
+     * {@link #cancel()}, and all workers have exited. A cancelled pipeline
+     * interrupts jobs that are still running once a short grace period is up.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            for (int i = 0; i < this.workers.size(); i++) {
+                this.queue.add(STOP);
+            }
+        }
+
+        boolean interrupted = false;
+        long deadline = System.nanoTime() + CANCEL_GRACE_NANOS;
+        for (Thread worker : this.workers) {
+            while (worker.isAlive()) {
+                try {
+                    if (this.cancelled) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0 || !worker.join(Duration.ofNanos(remaining))) {
+                            BlockExporter.LOGGER.warn("Export writer {} did not stop after cancel, interrupting it", worker.getName());
+                            worker.interrupt();
+                            worker.join();
+                        }
+                    } else {
+                        worker.join();
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Entry entry;
+            try {
+                entry = this.queue.take();
+            } catch (InterruptedException e) {
+                // only close() interrupts, after it has queued a stop for every worker
+                continue;
+            }
+            if (entry == STOP) {
+                return;
+            }
+
+            try {
+                if (this.cancelled) {
+                    discard(entry);
+                    continue;
+                }
+                entry.job().run();
+                entry.future().complete(null);
+            } catch (Throwable t) {
+                entry.future().completeExceptionally(t);
+            } finally {
+                this.pending.decrementAndGet();
+                // a job interrupted during cancel must not leak the flag into the next one
+                Thread.interrupted();
+            }
+        }
+    }
+
+    private static void discard(Entry entry) {
+        try {
+            entry.job().discard();
+        } catch (RuntimeException e) {
+            BlockExporter.LOGGER.error("Failed to release discarded export write", e);
+        } finally {
+            entry.future().completeExceptionally(new CancellationException("Export write was cancelled"));
+        }
+    }
+}
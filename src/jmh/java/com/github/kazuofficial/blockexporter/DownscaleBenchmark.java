@@ -0,0 +1,45 @@
+package com.github.kazuofficial.blockexporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Producing one {@code size} image from a larger render: the box filter used
+ * for supersampled readbacks and one mip pyramid step.
+ */
+@State(Scope.Thread)
+public class DownscaleBenchmark extends ExportBenchmark {
+    @Param({"16", "32", "64", "128", "256", "512", "1024"})
+    public int size;
+
+    @Param({"2", "4"})
+    public int factor;
+
+    private ByteBuffer source;
+    private ByteBuffer halfSource;
+    private ByteBuffer target;
+
+    @Setup
+    public void setup() {
+        this.source = SyntheticImages.item(this.size * this.factor, 1);
+        this.halfSource = SyntheticImages.item(this.size * 2, 1);
+        this.target = ByteBuffer.allocateDirect(this.size * this.size * PixelTransfer.BYTES_PER_PIXEL);
+    }
+
+    @Benchmark
+    public ByteBuffer boxScalar() {
+        PixelTransfer.downscaleFlipped(this.source, this.size * this.factor, this.size * this.factor, this.factor, this.target);
+        return this.target;
+    }
+
+    @Benchmark
+    public ByteBuffer mipHalve() {
+        MipPyramid.halve(this.halfSource, this.size * 2, this.size * 2, this.target);
+        return this.target;
+    }
+}
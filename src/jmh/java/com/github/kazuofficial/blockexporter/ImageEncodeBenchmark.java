@@ -0,0 +1,39 @@
+package com.github.kazuofficial.blockexporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encoding one item in each selectable image format.
+ */
+@State(Scope.Thread)
+public class ImageEncodeBenchmark extends ExportBenchmark {
+    @Param({"16", "64", "256", "1024"})
+    public int size;
+
+    @Param({"PNG", "QOI", "RAW"})
+    public ExportConfig.ImageFormat format;
+
+    private ByteBuffer image;
+    private ImageEncoder encoder;
+
+    @Setup
+    public void setup() {
+        this.image = SyntheticImages.item(this.size, 1);
+        this.encoder = switch (this.format) {
+            case PNG -> new PngEncoder(PngEncoder.Options.DEFAULT);
+            case QOI -> new QoiEncoder();
+            case RAW -> new RawRgbaEncoder();
+        };
+    }
+
+    @Benchmark
+    public ByteBuffer[] encode() {
+        return this.encoder.encodeImage(this.image, this.size, this.size);
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.kazuofficial.blockexporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+
+@State(Scope.Thread)
+public class PngEncodeBenchmark extends ExportBenchmark {
+    @Param({"16", "32", "64", "128", "256", "512", "1024"})
+    public int size;
+
+    @Param({"FAST", "DEFAULT", "SMALLEST"})
+    public String preset;
+
+    private ByteBuffer image;
+    private PngEncoder encoder;
+
+    @Setup
+    public void setup() {
+        this.image = SyntheticImages.item(this.size, 1);
+        this.encoder = new PngEncoder(switch (this.preset) {
+            case "FAST" -> PngEncoder.Options.FAST;
+            case "SMALLEST" -> PngEncoder.Options.SMALLEST;
+            default -> PngEncoder.Options.DEFAULT;
+        });
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return this.encoder.encode(this.image, this.size, this.size);
+    }
+}
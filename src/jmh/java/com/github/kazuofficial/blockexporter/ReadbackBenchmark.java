@@ -0,0 +1,34 @@
+package com.github.kazuofficial.blockexporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Mapped GPU buffer to image conversion, including the vertical flip, as done
+ * by {@link ItemRenderer#readPixels} for every readback.
+ */
+@State(Scope.Thread)
+public class ReadbackBenchmark extends ExportBenchmark {
+    @Param({"16", "32", "64", "128", "256", "512", "1024"})
+    public int size;
+
+    private ByteBuffer mapped;
+    private ByteBuffer image;
+
+    @Setup
+    public void setup() {
+        this.mapped = SyntheticImages.item(this.size, 1);
+        this.image = ByteBuffer.allocateDirect(this.mapped.capacity());
+    }
+
+    @Benchmark
+    public ByteBuffer copyFlipped() {
+        PixelTransfer.copyFlipped(this.mapped, this.size, this.size, this.image);
+        return this.image;
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.kazuofficial.blockexporter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.SplittableRandom;
+
+final class SyntheticImages {
+    private SyntheticImages() {
+    }
+
+    /**
+     * An item-like RGBA image: a shaded, pixel-art style diamond on a
+     * transparent background, upscaled from a 16x16 design like real renders.
+     */
+    static ByteBuffer item(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] palette = new int[12];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = random.nextInt(0x1000000);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size * size * PixelTransfer.BYTES_PER_PIXEL).order(ByteOrder.nativeOrder());
+        int texel = Math.max(1, size / 16);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int tx = x / texel;
+                int ty = y / texel;
+                int offset = (y * size + x) * PixelTransfer.BYTES_PER_PIXEL;
+                if (Math.abs(tx - 7.5) + Math.abs(ty - 7.5) > 7) {
+                    buffer.putInt(offset, 0);
+                    continue;
+                }
+
+                int color = palette[(tx * 7 + ty * 3) % palette.length];
+                int shade = (tx + ty) % 3 * 12;
+                buffer.put(offset, (byte) Math.max(0, (color & 0xFF) - shade));
+                buffer.put(offset + 1, (byte) Math.max(0, (color >> 8 & 0xFF) - shade));
+                buffer.put(offset + 2, (byte) Math.max(0, (color >> 16 & 0xFF) - shade));
+                buffer.put(offset + 3, (byte) 0xFF);
+            }
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.kazuofficial.blockexporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Writing already encoded images from several threads at once, the way the
+ * writer pool hands them to the export output.
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+public class WriteBenchmark extends ExportBenchmark {
+    @Param({"16", "64", "256", "1024"})
+    public int size;
+
+    @Param({"DIRECTORY", "ZIP", "TAR"})
+    public ExportConfig.SinkType sink;
+
+    private final AtomicLong nextName = new AtomicLong();
+    private byte[] png;
+    private Path directory;
+    private ExportOutput output;
+
+    @Setup(Level.Trial)
+    public void encode() {
+        this.png = new PngEncoder(PngEncoder.Options.DEFAULT).encode(SyntheticImages.item(this.size, 1), this.size, this.size);
+    }
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        this.directory = Files.createTempDirectory("blockexporter-bench");
+        ArchiveOutput.Format format = this.sink.getArchiveFormat();
+        this.output = format == null
+            ? new DirectoryOutput(this.directory)
+            : new ArchiveOutput(this.directory.resolve("export." + format.getExtension()), format);
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        this.output.close();
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        this.output.write("item_" + this.nextName.getAndIncrement() + ".png", this.png);
+    }
+}
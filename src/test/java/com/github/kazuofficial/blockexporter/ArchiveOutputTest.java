@@ -0,0 +1,211 @@
+package com.github.kazuofficial.blockexporter;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchiveOutputTest {
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(value = ArchiveOutput.Format.class, names = {"ZIP", "ZIP_DEFLATED"})
+    void zipRoundTripsThroughZipFileAndZipInputStream(ArchiveOutput.Format format) throws IOException {
+        Map<String, byte[]> entries = sampleEntries();
+        Path file = writeArchive(format, entries);
+
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            assertEquals(entries.size(), zip.size());
+            for (Map.Entry<String, byte[]> expected : entries.entrySet()) {
+                ZipEntry entry = zip.getEntry(expected.getKey());
+                assertNotNull(entry, expected.getKey());
+                try (InputStream input = zip.getInputStream(entry)) {
+                    assertArrayEquals(expected.getValue(), input.readAllBytes(), expected.getKey());
+                }
+                // deflating only pays off for the repetitive entries, the others stay stored
+                boolean compressible = expected.getKey().contains("repeated") && expected.getValue().length > 0;
+                int method = format == ArchiveOutput.Format.ZIP_DEFLATED && compressible ? ZipEntry.DEFLATED : ZipEntry.STORED;
+                assertEquals(method, entry.getMethod(), "method of " + expected.getKey());
+            }
+        }
+
+        assertEntries(entries, readZipStream(file));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0xFFFE, 0xFFFF, 0x10000, 70000})
+    void zipStaysReadableAroundTheZip64EntryCount(int count) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            entries.put("items/item_" + i + ".png", Integer.toString(i).getBytes());
+        }
+        Path file = writeArchive(ArchiveOutput.Format.ZIP, entries);
+
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            assertEquals(count, zip.size());
+            assertArrayEquals("12345".getBytes(), zip.getInputStream(zip.getEntry("items/item_12345.png")).readAllBytes());
+            String last = "items/item_" + (count - 1) + ".png";
+            assertArrayEquals(Integer.toString(count - 1).getBytes(), zip.getInputStream(zip.getEntry(last)).readAllBytes());
+        }
+        assertEquals(count, readZipStream(file).size());
+
+        // from 0xFFFF entries on, the count only fits the zip64 end of central directory record
+        byte[] archive = Files.readAllBytes(file);
+        ByteBuffer end = ByteBuffer.wrap(archive, archive.length - 22, 22).slice().order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x06054b50, end.getInt(0));
+        assertEquals(Math.min(count, 0xFFFF), end.getShort(10) & 0xFFFF);
+        boolean zip64 = ByteBuffer.wrap(archive, archive.length - 42, 4).slice().order(ByteOrder.LITTLE_ENDIAN).getInt(0) == 0x07064b50;
+        assertEquals(count >= 0xFFFF, zip64, "zip64 locator");
+    }
+
+    @Test
+    void tarRoundTripsLongAndUnicodeNames() throws IOException {
+        Map<String, byte[]> entries = sampleEntries();
+        // exactly 100 bytes fits the name field, longer names need the ustar prefix or a pax header
+        entries.put("n".repeat(100), bytes(3, 10));
+        entries.put("dir/" + "p".repeat(97), bytes(4, 512));
+        entries.put("d".repeat(150) + "/" + "x".repeat(90) + ".png", bytes(5, 700));
+        entries.put("z".repeat(300) + ".png", bytes(6, 1));
+        entries.put("ü".repeat(120) + "/" + "ß".repeat(60), bytes(7, 33));
+        // the prefix is split by bytes, the directory here has fewer characters than its 160 bytes
+        entries.put("ü".repeat(80) + "/tail.png", bytes(11, 40));
+        // pax records whose length prefix gains a digit once it counts itself
+        entries.put("q".repeat(991), bytes(8, 2));
+        entries.put("q".repeat(992), bytes(9, 2));
+        entries.put("q".repeat(993), bytes(10, 2));
+        Path file = writeArchive(ArchiveOutput.Format.TAR, entries);
+
+        Map<String, byte[]> read = new LinkedHashMap<>();
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(Files.newInputStream(file))) {
+            for (TarArchiveEntry entry = tar.getNextEntry(); entry != null; entry = tar.getNextEntry()) {
+                assertTrue(entry.isFile(), entry.getName());
+                read.put(entry.getName(), tar.readAllBytes());
+            }
+        }
+        assertEntries(entries, read);
+
+        byte[] archive = Files.readAllBytes(file);
+        assertEquals(0, archive.length % 512, "archive length");
+        for (int i = archive.length - 1024; i < archive.length; i++) {
+            assertEquals(0, archive[i], "end of archive marker");
+        }
+    }
+
+    @Test
+    void keepsPartFileUntilClosed() throws IOException {
+        Path file = this.directory.resolve("export.zip");
+        Path partFile = this.directory.resolve("export.zip.part");
+        Files.writeString(file, "left over from an earlier export");
+
+        ArchiveOutput output = new ArchiveOutput(file, ArchiveOutput.Format.ZIP);
+        output.write("a.png", bytes(1, 100));
+        assertTrue(Files.exists(partFile));
+        assertEquals("left over from an earlier export", Files.readString(file));
+
+        output.close();
+        assertFalse(Files.exists(partFile));
+        assertEntries(Map.of("a.png", bytes(1, 100)), readZipStream(file));
+        // closing twice is harmless
+        output.close();
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArchiveOutput.Format.class)
+    void abortRemovesPartFileAndKeepsEarlierArchive(ArchiveOutput.Format format) throws IOException {
+        Path file = this.directory.resolve("export." + format.getExtension());
+        Path partFile = this.directory.resolve("export." + format.getExtension() + ".part");
+        Files.writeString(file, "earlier export");
+
+        ArchiveOutput output = new ArchiveOutput(file, format);
+        for (int i = 0; i < 1000; i++) {
+            output.write("item_" + i + ".png", bytes(i, 4096));
+        }
+        output.abort();
+
+        assertFalse(Files.exists(partFile));
+        assertEquals("earlier export", Files.readString(file));
+        assertThrows(IOException.class, () -> output.write("late.png", bytes(1, 1)));
+        // a close after aborting must not publish the partial archive
+        output.close();
+        assertEquals("earlier export", Files.readString(file));
+        assertFalse(Files.exists(partFile));
+    }
+
+    private Path writeArchive(ArchiveOutput.Format format, Map<String, byte[]> entries) throws IOException {
+        Path file = this.directory.resolve("export." + format.getExtension());
+        ArchiveOutput output = new ArchiveOutput(file, format);
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            output.write(entry.getKey(), entry.getValue());
+        }
+        output.close();
+
+        assertTrue(Files.isRegularFile(file));
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".part")));
+        return file;
+    }
+
+    private static Map<String, byte[]> readZipStream(Path file) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(file))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return entries;
+    }
+
+    private static void assertEntries(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+        Set<String> missing = new TreeSet<>(expected.keySet());
+        missing.removeAll(actual.keySet());
+        Set<String> unexpected = new TreeSet<>(actual.keySet());
+        unexpected.removeAll(expected.keySet());
+        assertTrue(missing.isEmpty() && unexpected.isEmpty(), "missing " + missing + ", unexpected " + unexpected);
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue(), actual.get(entry.getKey()), entry.getKey());
+        }
+    }
+
+    private static Map<String, byte[]> sampleEntries() {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("empty.png", new byte[0]);
+        entries.put("minecraft_stone.png", bytes(1, 1000));
+        entries.put("64/minecraft_repeated.png", "pixel".repeat(2000).getBytes());
+        entries.put("32/mod_ünïcode_ß.png", bytes(2, 3000));
+        entries.put("block_" + "long_".repeat(60) + "repeated.png", "ab".repeat(10).getBytes());
+        // larger than the writer's staging buffer, so it bypasses it
+        entries.put("huge.raw", bytes(3, 3 * 1024 * 1024));
+        return entries;
+    }
+
+    private static byte[] bytes(long seed, int length) {
+        byte[] data = new byte[length];
+        new SplittableRandom(seed).nextBytes(data);
+        return data;
+    }
+}
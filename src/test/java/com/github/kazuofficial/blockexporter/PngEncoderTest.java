@@ -0,0 +1,254 @@
+package com.github.kazuofficial.blockexporter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class PngEncoderTest {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    @ParameterizedTest
+    @EnumSource(PngEncoder.Filter.class)
+    void roundTripsEveryFilter(PngEncoder.Filter filter) throws IOException {
+        PngEncoder encoder = new PngEncoder(new PngEncoder.Options(6, filter, false));
+        for (int[] size : new int[][]{{1, 1}, {7, 3}, {64, 64}, {300, 517}}) {
+            ByteBuffer image = TestImages.gradient(size[0], size[1]);
+            byte[] png = encoder.encode(image, size[0], size[1]);
+
+            assertEquals(6, header(png)[9], "color type");
+            assertPixels(image, size[0], size[1], decode(png));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 3, 4, 16, 17, 256})
+    void roundTripsPaletteImages(int colors) throws IOException {
+        PngEncoder encoder = new PngEncoder(new PngEncoder.Options(6, PngEncoder.Filter.ADAPTIVE, true));
+        int expectedDepth = colors <= 2 ? 1 : colors <= 4 ? 2 : colors <= 16 ? 4 : 8;
+        // odd widths leave part of the last byte of each packed row unused
+        for (int[] size : new int[][]{{13, 11}, {64, 64}, {1, 9}}) {
+            ByteBuffer image = TestImages.noise(size[0], size[1], colors, colors);
+            byte[] png = encoder.encode(image, size[0], size[1]);
+
+            byte[] header = header(png);
+            assertEquals(3, header[9], "color type");
+            assertFalse(header[8] > expectedDepth, "bit depth " + header[8] + " for " + colors + " colors");
+            assertPixels(image, size[0], size[1], decode(png));
+        }
+    }
+
+    @Test
+    void fallsBackToTruecolorWithTooManyColors() throws IOException {
+        PngEncoder encoder = new PngEncoder(PngEncoder.Options.DEFAULT);
+        ByteBuffer image = TestImages.noise(32, 32, 257 * 4, 1);
+        byte[] png = encoder.encode(image, 32, 32);
+
+        assertEquals(6, header(png)[9], "color type");
+        assertPixels(image, 32, 32, decode(png));
+    }
+
+    @Test
+    void fallsBackToTruecolorForLargeImages() throws IOException {
+        PngEncoder encoder = new PngEncoder(PngEncoder.Options.DEFAULT);
+        ByteBuffer image = TestImages.noise(65, 64, 4, 2);
+        byte[] png = encoder.encode(image, 65, 64);
+
+        assertEquals(6, header(png)[9], "color type");
+        assertPixels(image, 65, 64, decode(png));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 6, 9})
+    void roundTripsAcrossCompressionChunks(int level) throws IOException {
+        PngEncoder encoder = new PngEncoder(new PngEncoder.Options(level, PngEncoder.Filter.ADAPTIVE, false));
+        // neither height is a multiple of the rows that fit in one 128 KB deflate chunk
+        for (int[] size : new int[][]{{1000, 300}, {33, 2000}, {257, 129}}) {
+            ByteBuffer image = TestImages.gradient(size[0], size[1]);
+            byte[] png = encoder.encode(image, size[0], size[1]);
+            assertPixels(image, size[0], size[1], decode(png));
+        }
+    }
+
+    @Test
+    void storesChangedRectanglesOfAnimationFrames() throws IOException {
+        int width = 32;
+        int height = 24;
+        ByteBuffer first = TestImages.noise(width, height, 40, 3);
+        ByteBuffer second = TestImages.copy(first);
+        for (int y = 7; y < 10; y++) {
+            for (int x = 5; x < 13; x++) {
+                TestImages.setArgb(second, width, x, y, 0xFF000000 | x << 16 | y << 8);
+            }
+        }
+        ByteBuffer third = TestImages.copy(second);
+        ByteBuffer fourth = TestImages.copy(second);
+        TestImages.setArgb(fourth, width, width - 1, height - 1, 0x12345678);
+        List<ByteBuffer> frames = List.of(first, second, third, fourth);
+
+        byte[] png = new PngEncoder(PngEncoder.Options.DEFAULT).encodeAnimated(frames, width, height, 50);
+        List<Chunk> chunks = chunks(png);
+
+        Chunk animation = chunks.stream().filter(chunk -> chunk.type().equals("acTL")).findFirst().orElseThrow();
+        assertEquals(3, ByteBuffer.wrap(animation.data()).getInt(0), "frame count, the unchanged third frame is merged");
+        assertEquals(0, ByteBuffer.wrap(animation.data()).getInt(4), "loops forever");
+
+        // x, y, width, height and delay of every stored frame, and the frame its pixels come from
+        int[][] expected = {{0, 0, width, height, 50, 0}, {5, 7, 8, 3, 100, 1}, {width - 1, height - 1, 1, 1, 50, 3}};
+        List<Frame> decoded = frames(chunks);
+        assertEquals(expected.length, decoded.size());
+        int sequence = 0;
+        for (int i = 0; i < expected.length; i++) {
+            Frame frame = decoded.get(i);
+            ByteBuffer control = ByteBuffer.wrap(frame.control());
+            assertEquals(sequence, control.getInt(0), "fcTL sequence number");
+            assertEquals(expected[i][2], control.getInt(4), "width of frame " + i);
+            assertEquals(expected[i][3], control.getInt(8), "height of frame " + i);
+            assertEquals(expected[i][0], control.getInt(12), "x of frame " + i);
+            assertEquals(expected[i][1], control.getInt(16), "y of frame " + i);
+            assertEquals(expected[i][4], control.getShort(20), "delay of frame " + i);
+            assertEquals(1000, control.getShort(22), "delay denominator");
+            sequence += i == 0 ? 1 : 2;
+
+            BufferedImage pixels = decode(frameAsPng(control.getInt(4), control.getInt(8), frame.data()));
+            ByteBuffer source = frames.get(expected[i][5]);
+            for (int y = 0; y < expected[i][3]; y++) {
+                for (int x = 0; x < expected[i][2]; x++) {
+                    assertEquals(TestImages.argb(source, width, expected[i][0] + x, expected[i][1] + y), pixels.getRGB(x, y),
+                        "pixel " + x + "," + y + " of frame " + i);
+                }
+            }
+        }
+
+        // viewers without APNG support show the default image, which is the first frame
+        assertPixels(first, width, height, decode(png));
+    }
+
+    @Test
+    void writesStillImageWhenFramesNeverChange() throws IOException {
+        ByteBuffer image = TestImages.noise(16, 16, 8, 4);
+        byte[] png = new PngEncoder(PngEncoder.Options.DEFAULT).encodeAnimated(List.of(image, TestImages.copy(image)), 16, 16, 50);
+
+        assertFalse(chunks(png).stream().anyMatch(chunk -> chunk.type().equals("acTL")));
+        assertArrayEquals(new PngEncoder(PngEncoder.Options.DEFAULT).encode(image, 16, 16), png);
+    }
+
+    private static void assertPixels(ByteBuffer expected, int width, int height, BufferedImage actual) {
+        assertEquals(width, actual.getWidth());
+        assertEquals(height, actual.getHeight());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int expectedPixel = TestImages.argb(expected, width, x, y);
+                int actualPixel = actual.getRGB(x, y);
+                if (expectedPixel != actualPixel) {
+                    assertEquals(Integer.toHexString(expectedPixel), Integer.toHexString(actualPixel), "pixel " + x + "," + y);
+                }
+            }
+        }
+    }
+
+    private static BufferedImage decode(byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertNotNull(image, "ImageIO could not read the PNG");
+        return image;
+    }
+
+    private static byte[] header(byte[] png) {
+        Chunk header = chunks(png).getFirst();
+        assertEquals("IHDR", header.type());
+        return header.data();
+    }
+
+    /**
+     * Splits a PNG into its chunks, checking the signature and every CRC.
+     */
+    private static List<Chunk> chunks(byte[] png) {
+        assertArrayEquals(SIGNATURE, Arrays.copyOf(png, SIGNATURE.length));
+        ByteBuffer buffer = ByteBuffer.wrap(png, SIGNATURE.length, png.length - SIGNATURE.length);
+        List<Chunk> chunks = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            int length = buffer.getInt();
+            byte[] type = new byte[4];
+            buffer.get(type);
+            byte[] data = new byte[length];
+            buffer.get(data);
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(data);
+            assertEquals((int) crc.getValue(), buffer.getInt(), "CRC of " + new String(type, StandardCharsets.US_ASCII));
+            chunks.add(new Chunk(new String(type, StandardCharsets.US_ASCII), data));
+        }
+        assertEquals("IEND", chunks.getLast().type());
+        return chunks;
+    }
+
+    /**
+     * Pairs every fcTL with the zlib stream that follows it, from IDAT for the
+     * first frame and from fdAT, minus its sequence number, for the others.
+     */
+    private static List<Frame> frames(List<Chunk> chunks) {
+        List<Frame> frames = new ArrayList<>();
+        byte[] control = null;
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (Chunk chunk : chunks) {
+            switch (chunk.type()) {
+                case "fcTL", "IEND" -> {
+                    if (control != null) {
+                        frames.add(new Frame(control, data.toByteArray()));
+                    }
+                    control = chunk.data();
+                    data.reset();
+                }
+                case "IDAT" -> data.writeBytes(chunk.data());
+                case "fdAT" -> data.write(chunk.data(), 4, chunk.data().length - 4);
+                default -> {
+                }
+            }
+        }
+        return frames;
+    }
+
+    private static byte[] frameAsPng(int width, int height, byte[] zlibData) {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        png.writeBytes(SIGNATURE);
+        ByteBuffer header = ByteBuffer.allocate(13).putInt(width).putInt(height).put((byte) 8).put((byte) 6);
+        writeChunk(png, "IHDR", header.array());
+        writeChunk(png, "IDAT", zlibData);
+        writeChunk(png, "IEND", new byte[0]);
+        return png.toByteArray();
+    }
+
+    private static void writeChunk(ByteArrayOutputStream output, String type, byte[] data) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        output.writeBytes(ByteBuffer.allocate(4).putInt(data.length).array());
+        output.writeBytes(typeBytes);
+        output.writeBytes(data);
+        output.writeBytes(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+
+    private record Chunk(String type, byte[] data) {
+    }
+
+    private record Frame(byte[] control, byte[] data) {
+    }
+}
@@ -0,0 +1,232 @@
+package com.github.kazuofficial.blockexporter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QoiEncoderTest {
+    private static final byte[] END_MARKER = {0, 0, 0, 0, 0, 0, 0, 1};
+    private static final int HEADER_SIZE = 14;
+
+    @Test
+    void roundTripsImages() {
+        for (int[] size : new int[][]{{1, 1}, {7, 3}, {64, 64}, {300, 517}}) {
+            assertRoundTrip(TestImages.gradient(size[0], size[1]), size[0], size[1]);
+            // few colors, so most pixels are index hits or runs
+            assertRoundTrip(TestImages.noise(size[0], size[1], 5, 1), size[0], size[1]);
+            assertRoundTrip(TestImages.noise(size[0], size[1], 300, 2), size[0], size[1]);
+            assertRoundTrip(walk(size[0], size[1], 3), size[0], size[1]);
+        }
+    }
+
+    @Test
+    void writesHeaderAndEndMarker() {
+        byte[] qoi = encode(TestImages.gradient(300, 2), 300, 2);
+
+        ByteBuffer header = ByteBuffer.wrap(qoi, 0, HEADER_SIZE);
+        byte[] magic = new byte[4];
+        header.get(magic);
+        assertEquals("qoif", new String(magic, StandardCharsets.US_ASCII));
+        assertEquals(300, header.getInt(), "width");
+        assertEquals(2, header.getInt(), "height");
+        assertEquals(4, header.get(), "channels");
+        assertEquals(0, header.get(), "colorspace");
+        assertArrayEquals(END_MARKER, Arrays.copyOfRange(qoi, qoi.length - END_MARKER.length, qoi.length));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 61, 62, 63, 124, 125, 200})
+    void splitsRunsAtTheirMaximumLength(int length) {
+        // the decoder starts from opaque black, so the whole image is one run
+        ByteBuffer image = TestImages.allocate(length, 1);
+        for (int x = 0; x < length; x++) {
+            TestImages.setArgb(image, length, x, 0, 0xFF000000);
+        }
+
+        assertArrayEquals(runOps(length), ops(encode(image, length, 1)));
+        assertRoundTrip(image, length, 1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 61, 62, 63})
+    void endsRunsAtTheLastPixel(int length) {
+        int width = length + 2;
+        ByteBuffer image = TestImages.allocate(width, 1);
+        TestImages.setArgb(image, width, 0, 0, 0xFF102030);
+        for (int x = 1; x < width; x++) {
+            TestImages.setArgb(image, width, x, 0, 0xFF405060);
+        }
+
+        // both colors are too far from their predecessor for anything but RGB ops, the repeats follow as runs
+        byte[] expected = new byte[8];
+        ByteBuffer.wrap(expected).putInt(0xFE102030).putInt(0xFE405060);
+        byte[] runs = runOps(length);
+        expected = Arrays.copyOf(expected, expected.length + runs.length);
+        System.arraycopy(runs, 0, expected, 8, runs.length);
+        assertArrayEquals(expected, ops(encode(image, width, 1)));
+        assertRoundTrip(image, width, 1);
+    }
+
+    @Test
+    void findsTransparentBlackInTheInitialIndex() {
+        // every index slot starts as transparent black, which hashes to slot 0
+        ByteBuffer image = TestImages.allocate(3, 1);
+        TestImages.setArgb(image, 3, 1, 0, 0xFF808080);
+
+        // index 0, then the gray with its alpha, then index 0 again
+        assertArrayEquals(new byte[]{0x00, (byte) 0xFF, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0xFF, 0x00}, ops(encode(image, 3, 1)));
+        assertRoundTrip(image, 3, 1);
+    }
+
+    @Test
+    void wrapsDifferencesAroundTheChannelRange() {
+        int[] pixels = {0xFFFF0080, 0xFF00FE80, 0xFF101094, 0xFFFAFC85, 0x7FFAFC85};
+        ByteBuffer image = TestImages.allocate(pixels.length, 1);
+        for (int x = 0; x < pixels.length; x++) {
+            TestImages.setArgb(image, pixels.length, x, 0, pixels[x]);
+        }
+
+        byte[] expected = {
+            // blue is too far from the initial opaque black
+            (byte) 0xFE, (byte) 0xFF, 0x00, (byte) 0x80,
+            // red 255 to 0 and green 0 to 254 wrap to +1 and -2
+            0x40 | 3 << 4 | 0 << 2 | 2,
+            // green 254 to 16 wraps to +18, red and blue differ from it by -2 and +2
+            (byte) (0x80 | 18 + 32), (6 << 4) | 10,
+            // green 16 to 252 wraps to -20, red and blue differ from it by -2 and +5
+            (byte) (0x80 | -20 + 32), (6 << 4) | 13,
+            // a change of alpha needs all four channels
+            (byte) 0xFF, (byte) 0xFA, (byte) 0xFC, (byte) 0x85, 0x7F
+        };
+        assertArrayEquals(expected, ops(encode(image, pixels.length, 1)));
+        assertRoundTrip(image, pixels.length, 1);
+    }
+
+    private static void assertRoundTrip(ByteBuffer image, int width, int height) {
+        int[] decoded = decode(encode(image, width, height), width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int expected = TestImages.argb(image, width, x, y);
+                int actual = decoded[y * width + x];
+                if (expected != actual) {
+                    assertEquals(Integer.toHexString(expected), Integer.toHexString(actual), "pixel " + x + "," + y);
+                }
+            }
+        }
+    }
+
+    private static byte[] encode(ByteBuffer image, int width, int height) {
+        return TestImages.join(new QoiEncoder().encodeImage(image, width, height));
+    }
+
+    /**
+     * The run ops that repeat the previous pixel {@code length} times.
+     */
+    private static byte[] runOps(int length) {
+        byte[] ops = new byte[(length + 61) / 62];
+        for (int i = 0; i < ops.length; i++) {
+            ops[i] = (byte) (0xC0 | Math.min(length - 62 * i, 62) - 1);
+        }
+        return ops;
+    }
+
+    /**
+     * The bytes between the header and the end marker.
+     */
+    private static byte[] ops(byte[] qoi) {
+        return Arrays.copyOfRange(qoi, HEADER_SIZE, qoi.length - END_MARKER.length);
+    }
+
+    /**
+     * A decoder written from the format specification, returning ARGB pixels.
+     */
+    private static int[] decode(byte[] qoi, int width, int height) {
+        ByteBuffer input = ByteBuffer.wrap(qoi);
+        assertEquals(0x716F6966, input.getInt(), "magic");
+        assertEquals(width, input.getInt());
+        assertEquals(height, input.getInt());
+        input.position(HEADER_SIZE);
+
+        int[] index = new int[64];
+        int r = 0;
+        int g = 0;
+        int b = 0;
+        int a = 255;
+        int run = 0;
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            if (run > 0) {
+                run--;
+            } else {
+                int op = input.get() & 0xFF;
+                if (op == 0xFE) {
+                    r = input.get() & 0xFF;
+                    g = input.get() & 0xFF;
+                    b = input.get() & 0xFF;
+                } else if (op == 0xFF) {
+                    r = input.get() & 0xFF;
+                    g = input.get() & 0xFF;
+                    b = input.get() & 0xFF;
+                    a = input.get() & 0xFF;
+                } else if ((op & 0xC0) == 0x00) {
+                    int color = index[op];
+                    a = color >>> 24;
+                    r = color >>> 16 & 0xFF;
+                    g = color >>> 8 & 0xFF;
+                    b = color & 0xFF;
+                } else if ((op & 0xC0) == 0x40) {
+                    r = r + (op >> 4 & 3) - 2 & 0xFF;
+                    g = g + (op >> 2 & 3) - 2 & 0xFF;
+                    b = b + (op & 3) - 2 & 0xFF;
+                } else if ((op & 0xC0) == 0x80) {
+                    int second = input.get() & 0xFF;
+                    int dg = (op & 0x3F) - 32;
+                    r = r + dg - 8 + (second >> 4) & 0xFF;
+                    g = g + dg & 0xFF;
+                    b = b + dg - 8 + (second & 0x0F) & 0xFF;
+                } else {
+                    run = op & 0x3F;
+                }
+                index[(r * 3 + g * 5 + b * 7 + a * 11) % 64] = a << 24 | r << 16 | g << 8 | b;
+            }
+            pixels[i] = a << 24 | r << 16 | g << 8 | b;
+        }
+
+        byte[] end = new byte[input.remaining()];
+        input.get(end);
+        assertArrayEquals(END_MARKER, end, "nothing but the end marker after the last pixel");
+        return pixels;
+    }
+
+    /**
+     * An image whose channels drift by small random steps, so neighbouring
+     * pixels mostly differ by amounts the DIFF and LUMA ops cover and the
+     * channels wrap around often.
+     */
+    private static ByteBuffer walk(int width, int height, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        ByteBuffer image = TestImages.allocate(width, height);
+        int argb = 0xFF000000;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int step = random.nextInt(8);
+                int green = random.nextInt(-40, 40);
+                int r = (argb >>> 16) + green + random.nextInt(-step, step + 1) & 0xFF;
+                int g = (argb >>> 8) + green & 0xFF;
+                int b = argb + green + random.nextInt(-step, step + 1) & 0xFF;
+                int a = random.nextInt(50) == 0 ? random.nextInt(256) : argb >>> 24;
+                argb = a << 24 | r << 16 | g << 8 | b;
+                TestImages.setArgb(image, width, x, y, argb);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.kazuofficial.blockexporter;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RawRgbaEncoderTest {
+    @Test
+    void writesHeaderBeforeThePixels() {
+        ByteBuffer image = TestImages.gradient(5, 3);
+        byte[] file = TestImages.join(new RawRgbaEncoder().encodeImage(image, 5, 3));
+
+        assertEquals(RawRgbaEncoder.HEADER_SIZE + 5 * 3 * 4, file.length);
+        assertHeader(file, 5, 3, 1, 0);
+        assertArrayEquals(pixels(image), Arrays.copyOfRange(file, RawRgbaEncoder.HEADER_SIZE, file.length));
+    }
+
+    @Test
+    void writesFramesBackToBack() {
+        List<ByteBuffer> frames = List.of(TestImages.noise(4, 2, 10, 1), TestImages.noise(4, 2, 10, 2), TestImages.gradient(4, 2));
+        byte[] file = TestImages.join(new RawRgbaEncoder().encodeAnimation(frames, 4, 2, 50));
+
+        int frameBytes = 4 * 2 * 4;
+        assertEquals(RawRgbaEncoder.HEADER_SIZE + frames.size() * frameBytes, file.length);
+        assertHeader(file, 4, 2, 3, 50);
+        for (int i = 0; i < frames.size(); i++) {
+            int offset = RawRgbaEncoder.HEADER_SIZE + i * frameBytes;
+            assertArrayEquals(pixels(frames.get(i)), Arrays.copyOfRange(file, offset, offset + frameBytes), "frame " + i);
+        }
+    }
+
+    @Test
+    void leavesTheSourcePositionAlone() {
+        ByteBuffer image = TestImages.gradient(8, 8);
+        ByteBuffer[] data = new RawRgbaEncoder().encodeImage(image, 8, 8);
+        TestImages.join(data);
+
+        assertEquals(0, image.position());
+        // the pixels are handed on without a copy
+        TestImages.setArgb(image, 8, 0, 0, 0x11223344);
+        assertEquals(0x22, data[1].get(0));
+    }
+
+    private static void assertHeader(byte[] file, int width, int height, int frames, int frameDelayMillis) {
+        assertEquals("RGBA", new String(file, 0, 4, StandardCharsets.US_ASCII), "magic");
+        ByteBuffer header = ByteBuffer.wrap(file, 0, RawRgbaEncoder.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(width, header.getInt(4), "width");
+        assertEquals(height, header.getInt(8), "height");
+        assertEquals(frames, header.getInt(12), "frames");
+        assertEquals(frameDelayMillis, header.getInt(16), "frame delay");
+    }
+
+    private static byte[] pixels(ByteBuffer image) {
+        byte[] pixels = new byte[image.capacity()];
+        image.get(0, pixels);
+        return pixels;
+    }
+}
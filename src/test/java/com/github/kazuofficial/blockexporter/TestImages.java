@@ -0,0 +1,81 @@
+package com.github.kazuofficial.blockexporter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.SplittableRandom;
+
+final class TestImages {
+    private TestImages() {
+    }
+
+    /**
+     * An RGBA image in the layout the exporter reads back, with pixels drawn
+     * from {@code colors} random colors. The first two are transparent black
+     * and a half transparent color so alpha handling is always exercised.
+     */
+    static ByteBuffer noise(int width, int height, int colors, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] palette = new int[colors];
+        for (int i = 0; i < colors; i++) {
+            palette[i] = i == 0 ? 0 : i == 1 ? 0x80000000 | random.nextInt(0x1000000) : random.nextInt();
+        }
+
+        ByteBuffer image = allocate(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                setArgb(image, width, x, y, palette[random.nextInt(colors)]);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * A smooth image with a different color in almost every pixel, closer to
+     * real renders than noise when it comes to how filters pick up patterns.
+     */
+    static ByteBuffer gradient(int width, int height) {
+        ByteBuffer image = allocate(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int alpha = (x + y) % 5 == 0 ? 0 : 255 - (x * 7 + y) % 128;
+                setArgb(image, width, x, y, alpha << 24 | (x * 3 & 0xFF) << 16 | (y * 5 & 0xFF) << 8 | (x ^ y) & 0xFF);
+            }
+        }
+        return image;
+    }
+
+    static ByteBuffer allocate(int width, int height) {
+        return ByteBuffer.allocateDirect(width * height * PixelTransfer.BYTES_PER_PIXEL).order(ByteOrder.nativeOrder());
+    }
+
+    static ByteBuffer copy(ByteBuffer image) {
+        ByteBuffer copy = ByteBuffer.allocateDirect(image.capacity()).order(image.order());
+        copy.put(0, image, 0, image.capacity());
+        return copy;
+    }
+
+    /**
+     * Joins the buffers an {@link ImageEncoder} returns into the file they make up.
+     */
+    static byte[] join(ByteBuffer[] data) {
+        ByteBuffer file = ByteBuffer.allocate(Math.toIntExact(ImageEncoder.length(data)));
+        for (ByteBuffer buffer : data) {
+            file.put(buffer.duplicate());
+        }
+        return file.array();
+    }
+
+    static int argb(ByteBuffer image, int width, int x, int y) {
+        int offset = (y * width + x) * PixelTransfer.BYTES_PER_PIXEL;
+        return (image.get(offset + 3) & 0xFF) << 24 | (image.get(offset) & 0xFF) << 16
+            | (image.get(offset + 1) & 0xFF) << 8 | image.get(offset + 2) & 0xFF;
+    }
+
+    static void setArgb(ByteBuffer image, int width, int x, int y, int argb) {
+        int offset = (y * width + x) * PixelTransfer.BYTES_PER_PIXEL;
+        image.put(offset, (byte) (argb >>> 16));
+        image.put(offset + 1, (byte) (argb >>> 8));
+        image.put(offset + 2, (byte) argb);
+        image.put(offset + 3, (byte) (argb >>> 24));
+    }
+}